@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.inject.Provider;
+
+/**
+ * Measures the allocations of a complete begin/get/end cycle of the
+ * {@link ThreadLocalUnitOfWorkScope} over a warm set of keys. The unscoped
+ * providers return a shared instance, so only the allocations of the scope
+ * itself are measured. Run with {@code -prof gc} (or the {@link BenchmarkRunner})
+ * and compare {@code gc.alloc.rate.norm}, which is expected to be zero when
+ * recycling indexed contexts.
+ *
+ * @since 2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+    private static final Object INSTANCE = new Object();
+
+    @Param({"false", "true"})
+    public boolean recycling;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    @Param({"10"})
+    public int keys;
+
+    private ThreadLocalUnitOfWorkScope scope;
+
+    private Provider<?>[] providers;
+
+    @Setup
+    public void setUp() {
+        scope = new ThreadLocalUnitOfWorkScope();
+        scope.setStrategy(Benchmarks.strategy());
+        scope.setIndexed(indexed);
+        scope.setRecycling(recycling);
+        providers = Benchmarks.providers(scope, keys, new Provider<Object>() {
+
+            @Override
+            public Object get() {
+                return INSTANCE;
+            }
+
+        });
+    }
+
+    /**
+     * Begins a unit of work, accesses every key twice and ends it.
+     *
+     * @param hole the blackhole
+     */
+    @Benchmark
+    public void cycle(Blackhole hole) {
+        scope.begin();
+        for (Provider<?> provider : providers) {
+            hole.consume(provider.get());
+            hole.consume(provider.get());
+        }
+        scope.end();
+    }
+
+}
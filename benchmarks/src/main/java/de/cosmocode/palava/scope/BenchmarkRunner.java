@@ -0,0 +1,69 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks (all by default) with the {@link GCProfiler}
+ * using 1, 2, 4, ... threads up to the number of available processors.
+ * Any arguments are treated as regular JMH command line options, e.g.
+ * {@code java -cp target/benchmarks.jar de.cosmocode.palava.scope.BenchmarkRunner ScopingProvider}.
+ *
+ * @since 2.1
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args jmh command line options
+     * @throws RunnerException if a benchmark failed
+     * @throws CommandLineOptionException if the given arguments are invalid
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        final int processors = Runtime.getRuntime().availableProcessors();
+
+        for (int threads = 1; threads <= processors; threads = next(threads, processors)) {
+            new Runner(new OptionsBuilder().
+                parent(options).
+                threads(threads).
+                addProfiler(GCProfiler.class).
+                build()
+            ).run();
+        }
+    }
+
+    private static int next(int threads, int processors) {
+        if (threads == processors) {
+            return threads + 1;
+        } else {
+            return Math.min(threads * 2, processors);
+        }
+    }
+
+}
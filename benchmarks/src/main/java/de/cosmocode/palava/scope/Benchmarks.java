@@ -0,0 +1,94 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+import com.google.inject.name.Names;
+
+/**
+ * Utility class for benchmarks.
+ *
+ * @since 2.1
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+
+    }
+
+    /**
+     * Creates the {@link DestroyStrategy} bound by the {@link DestroyStrategyModule}
+     * plus the {@link CloseableDestroyStrategy}.
+     *
+     * @return a new compound destroy strategy
+     */
+    static DestroyStrategy strategy() {
+        return new CompoundDestroyStrategy(ImmutableSet.<DestroyStrategy>of(
+            new DefaultDestroyStrategy(), new CloseableDestroyStrategy()
+        ));
+    }
+
+    /**
+     * Creates an unscoped provider which creates a new object on every call.
+     *
+     * @return a new unscoped provider
+     */
+    static Provider<Object> unscoped() {
+        return new Provider<Object>() {
+
+            @Override
+            public Object get() {
+                return new Object();
+            }
+
+        };
+    }
+
+    /**
+     * Creates the given number of scoped providers, each one bound
+     * to a distinct key, just like guice does during injector creation.
+     *
+     * @param scope the scope
+     * @param size the number of providers
+     * @return an array of scoped providers
+     */
+    static Provider<?>[] providers(Scope scope, int size) {
+        return providers(scope, size, unscoped());
+    }
+
+    /**
+     * Creates the given number of scoped providers, each one bound
+     * to a distinct key and backed by the given unscoped provider.
+     *
+     * @param scope the scope
+     * @param size the number of providers
+     * @param unscoped the unscoped provider
+     * @return an array of scoped providers
+     */
+    static Provider<?>[] providers(Scope scope, int size, Provider<Object> unscoped) {
+        final Provider<?>[] providers = new Provider<?>[size];
+        for (int i = 0; i < size; i++) {
+            final Key<Object> key = Key.get(Object.class, Names.named("key" + i));
+            providers[i] = scope.scope(key, unscoped);
+        }
+        return providers;
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Maps;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+/**
+ * Measures {@link DestroyingScope#destroy(Map)} using the strategies bound by
+ * the {@link DestroyStrategyModule} plus the {@link CloseableDestroyStrategy}.
+ * Every second value is {@link Destroyable}, the others are plain objects.
+ *
+ * @since 2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DestroyBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int size;
+
+    private ThreadLocalUnitOfWorkScope scope;
+
+    private Map<Object, Object> context;
+
+    @Setup
+    public void setUp() {
+        scope = new ThreadLocalUnitOfWorkScope();
+        scope.setStrategy(Benchmarks.strategy());
+        context = Maps.newHashMap();
+        for (int i = 0; i < size; i++) {
+            final Key<Object> key = Key.get(Object.class, Names.named("key" + i));
+            context.put(key, i % 2 == 0 ? new NoopDestroyable() : new Object());
+        }
+    }
+
+    /**
+     * Destroys all entries of the context.
+     */
+    @Benchmark
+    public void destroy() {
+        scope.destroy(context);
+    }
+
+    /**
+     * A {@link Destroyable} with an empty {@link Destroyable#destroy()} method.
+     */
+    private static final class NoopDestroyable implements Destroyable {
+
+        @Override
+        public void destroy() {
+
+        }
+
+    }
+
+}
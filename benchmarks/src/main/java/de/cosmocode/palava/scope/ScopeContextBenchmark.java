@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.inject.Provider;
+
+/**
+ * Compares the map backed {@link DefaultScopeContext}, the slot indexed
+ * {@link SlotScopeContext} and the {@link ThreadConfinedScopeContext} when
+ * accessing scoped instances through {@link ScopingProvider#get()}.
+ *
+ * @since 2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopeContextBenchmark {
+
+    @Param({"default", "indexed", "confined"})
+    public String context;
+
+    @Param({"1", "10", "50"})
+    public int keys;
+
+    private ThreadLocalUnitOfWorkScope scope;
+
+    private Provider<?>[] providers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scope = new ThreadLocalUnitOfWorkScope();
+        scope.setStrategy(Benchmarks.strategy());
+        if ("indexed".equals(context)) {
+            scope.setIndexed(true);
+        } else if ("confined".equals(context)) {
+            scope.setFactory(new ThreadConfinedScopeContextFactory());
+        }
+        providers = Benchmarks.providers(scope, keys);
+    }
+
+    @Setup(Level.Iteration)
+    public void begin() {
+        scope.begin();
+        for (Provider<?> provider : providers) {
+            provider.get();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void end() {
+        scope.end();
+    }
+
+    /**
+     * Accesses all scoped instances of the current unit of work.
+     *
+     * @param hole the blackhole
+     */
+    @Benchmark
+    public void hit(Blackhole hole) {
+        for (Provider<?> provider : providers) {
+            hole.consume(provider.get());
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+
+/**
+ * Measures {@link ScopingProvider#get()} of a {@link ThreadLocalUnitOfWorkScope}
+ * for existing (hit) and missing (miss) scoped instances. The scope and its
+ * providers are shared, every benchmark thread runs its own unit of work.
+ *
+ * @since 2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopingProviderBenchmark {
+
+    /**
+     * The scope and its provider, shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({"false", "true"})
+        public boolean indexed;
+
+        @Param({"false", "true"})
+        public boolean singleFlight;
+
+        private final Key<Object> key = Key.get(Object.class);
+
+        private ThreadLocalUnitOfWorkScope scope;
+
+        private Provider<Object> provider;
+
+        @Setup
+        public void setUp() {
+            scope = new ThreadLocalUnitOfWorkScope();
+            scope.setStrategy(Benchmarks.strategy());
+            scope.setIndexed(indexed);
+            scope.setSingleFlight(singleFlight);
+            provider = scope.scope(key, Benchmarks.unscoped());
+        }
+
+    }
+
+    /**
+     * The unit of work of the current thread.
+     */
+    @State(Scope.Thread)
+    public static class Unit {
+
+        @Setup(Level.Iteration)
+        public void begin(Shared shared) {
+            shared.scope.begin();
+            shared.provider.get();
+        }
+
+        @TearDown(Level.Iteration)
+        public void end(Shared shared) {
+            shared.scope.end();
+        }
+
+    }
+
+    /**
+     * Accesses an already scoped instance.
+     *
+     * @param shared the shared state
+     * @param unit the current unit of work
+     * @return the scoped instance
+     */
+    @Benchmark
+    public Object hit(Shared shared, Unit unit) {
+        return shared.provider.get();
+    }
+
+    /**
+     * Removes the scoped instance and accesses it again, which includes
+     * creating a new instance. Includes the cost of {@link ScopeContext#remove(Object)}.
+     *
+     * @param shared the shared state
+     * @param unit the current unit of work
+     * @return the scoped instance
+     */
+    @Benchmark
+    public Object miss(Shared shared, Unit unit) {
+        shared.scope.get().remove(shared.key);
+        return shared.provider.get();
+    }
+
+}
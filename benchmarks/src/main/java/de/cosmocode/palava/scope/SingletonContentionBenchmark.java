@@ -0,0 +1,85 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.inject.Provider;
+
+/**
+ * Measures contended access of existing instances of an active {@link SingletonUnitOfWorkScope}
+ * using as many threads as there are processors. All threads share the same unit of work.
+ *
+ * @since 2.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class SingletonContentionBenchmark {
+
+    @Param({"1", "10"})
+    public int keys;
+
+    private SingletonUnitOfWorkScope scope;
+
+    private Provider<?>[] providers;
+
+    @Setup
+    public void setUp() {
+        scope = new SingletonUnitOfWorkScope();
+        scope.setStrategy(Benchmarks.strategy());
+        providers = Benchmarks.providers(scope, keys);
+        scope.begin();
+    }
+
+    @TearDown
+    public void tearDown() {
+        scope.end();
+    }
+
+    /**
+     * Accesses all scoped instances.
+     *
+     * @param hole the blackhole
+     */
+    @Benchmark
+    public void get(Blackhole hole) {
+        for (Provider<?> provider : providers) {
+            hole.consume(provider.get());
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+
+/**
+ * Measures provider access of an active {@link SingletonUnitOfWorkScope}.
+ * All benchmark threads share the same unit of work.
+ *
+ * @since 2.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingletonUnitOfWorkScopeBenchmark {
+
+    private SingletonUnitOfWorkScope scope;
+
+    private Provider<Object> provider;
+
+    @Setup
+    public void setUp() {
+        scope = new SingletonUnitOfWorkScope();
+        scope.setStrategy(Benchmarks.strategy());
+        provider = scope.scope(Key.get(Object.class), Benchmarks.unscoped());
+        scope.begin();
+    }
+
+    @TearDown
+    public void tearDown() {
+        scope.end();
+    }
+
+    /**
+     * Accesses the singleton instance.
+     *
+     * @return the scoped instance
+     */
+    @Benchmark
+    public Object get() {
+        return provider.get();
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+
+/**
+ * Compares {@link ThreadLocalUnitOfWorkScope} and {@link BoundUnitOfWorkScope}
+ * in a thread per request setup: every invocation starts a new thread which
+ * runs one unit of work accessing a scoped instance. Virtual threads are
+ * looked up reflectively and require a runtime which supports them.
+ *
+ * @since 2.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThreadPerRequestBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private ThreadFactory factory;
+
+    private ThreadLocalUnitOfWorkScope threadLocalScope;
+
+    private Provider<Object> threadLocalProvider;
+
+    private BoundUnitOfWorkScope boundScope;
+
+    private Provider<Object> boundProvider;
+
+    @Setup
+    public void setUp() throws Exception {
+        factory = "virtual".equals(threads) ? virtualThreadFactory() : Executors.defaultThreadFactory();
+
+        threadLocalScope = new ThreadLocalUnitOfWorkScope();
+        threadLocalScope.setStrategy(Benchmarks.strategy());
+        threadLocalProvider = threadLocalScope.scope(Key.get(Object.class), Benchmarks.unscoped());
+
+        boundScope = new BoundUnitOfWorkScope();
+        boundScope.setStrategy(Benchmarks.strategy());
+        boundProvider = boundScope.scope(Key.get(Object.class), Benchmarks.unscoped());
+    }
+
+    private static ThreadFactory virtualThreadFactory() throws Exception {
+        final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        final Class<?> type = Class.forName("java.lang.Thread$Builder");
+        return ThreadFactory.class.cast(type.getMethod("factory").invoke(builder));
+    }
+
+    /**
+     * Runs the given request on a new thread and waits for its completion.
+     *
+     * @param request the request
+     * @return the result of the request
+     * @throws Exception if the request failed
+     */
+    private Object handle(Callable<Object> request) throws Exception {
+        final FutureTask<Object> task = new FutureTask<Object>(request);
+        factory.newThread(task).start();
+        return task.get();
+    }
+
+    /**
+     * Runs one unit of work using {@link ThreadLocalUnitOfWorkScope#begin()} and
+     * {@link ThreadLocalUnitOfWorkScope#end()} on a new thread.
+     *
+     * @return the scoped instance
+     * @throws Exception should not happen
+     */
+    @Benchmark
+    public Object threadLocal() throws Exception {
+        return handle(new Callable<Object>() {
+
+            @Override
+            public Object call() {
+                threadLocalScope.begin();
+                try {
+                    return threadLocalProvider.get();
+                } finally {
+                    threadLocalScope.end();
+                }
+            }
+
+        });
+    }
+
+    /**
+     * Runs one unit of work using {@link BoundUnitOfWorkScope#call(Callable)} on a new thread.
+     *
+     * @return the scoped instance
+     * @throws Exception should not happen
+     */
+    @Benchmark
+    public Object bound() throws Exception {
+        return handle(new Callable<Object>() {
+
+            @Override
+            public Object call() throws Exception {
+                return boundScope.call(new Callable<Object>() {
+
+                    @Override
+                    public Object call() {
+                        return boundProvider.get();
+                    }
+
+                });
+            }
+
+        });
+    }
+
+}
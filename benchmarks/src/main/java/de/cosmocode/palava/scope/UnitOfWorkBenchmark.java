@@ -0,0 +1,103 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+
+/**
+ * Measures opening and closing a unit of work using {@link UnitOfWorkScopes#open(UnitOfWorkScope)},
+ * which is what the {@link UnitOfWork} aspect does, for the {@link ThreadLocalUnitOfWorkScope}
+ * and the {@link BoundUnitOfWorkScope}. Both keep the current unit of work in a {@link ThreadLocal}.
+ *
+ * @since 2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnitOfWorkBenchmark {
+
+    /**
+     * The scope and its provider, shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({"threadLocal", "bound"})
+        public String type;
+
+        private ContextUnitOfWorkScope scope;
+
+        private Provider<Object> provider;
+
+        @Setup
+        public void setUp() {
+            if ("bound".equals(type)) {
+                scope = new BoundUnitOfWorkScope();
+            } else {
+                scope = new ThreadLocalUnitOfWorkScope();
+            }
+            scope.setStrategy(Benchmarks.strategy());
+            provider = scope.scope(Key.get(Object.class), Benchmarks.unscoped());
+        }
+
+    }
+
+    /**
+     * Opens and closes an empty unit of work.
+     *
+     * @param shared the shared state
+     */
+    @Benchmark
+    public void empty(Shared shared) {
+        UnitOfWorkScopes.open(shared.scope).close();
+    }
+
+    /**
+     * Opens a unit of work, provides one scoped instance twice and closes it.
+     *
+     * @param shared the shared state
+     * @return the scoped instance
+     */
+    @Benchmark
+    public Object provision(Shared shared) {
+        final UnitOfWorkHandle handle = UnitOfWorkScopes.open(shared.scope);
+        try {
+            shared.provider.get();
+            return shared.provider.get();
+        } finally {
+            handle.close();
+        }
+    }
+
+}
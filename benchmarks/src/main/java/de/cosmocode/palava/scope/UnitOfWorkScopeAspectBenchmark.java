@@ -0,0 +1,163 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import de.cosmocode.palava.core.aop.ReinjectableAspectModule;
+
+/**
+ * Measures the overhead of {@link AbstractUnitOfWorkScopeAspect#aroundUnitOfWork(ProceedingJoinPoint)}
+ * compared to proceeding the same join point directly. The advice is invoked
+ * using a stub join point, which keeps weaving out of the benchmark module.
+ *
+ * @since 2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnitOfWorkScopeAspectBenchmark {
+
+    /**
+     * The injected aspect and its scope, shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        private UnitOfWorkScope scope;
+
+        private AbstractUnitOfWorkScopeAspect aspect;
+
+        private ProceedingJoinPoint point;
+
+        @Setup
+        public void setUp() {
+            final Injector injector = Guice.createInjector(
+                new ThreadLocalUnitOfWorkScopeModule(),
+                new ReinjectableAspectModule(),
+                new DestroyStrategyModule()
+            );
+            scope = injector.getInstance(UnitOfWorkScope.class);
+            aspect = new UnitOfWorkScopeAspect();
+            injector.injectMembers(aspect);
+            point = joinPoint();
+        }
+
+    }
+
+    /**
+     * An already active unit of work of the current thread, which will be joined by the advice.
+     */
+    @State(Scope.Thread)
+    public static class Active {
+
+        @Setup(Level.Iteration)
+        public void begin(Shared shared) {
+            shared.scope.begin();
+        }
+
+        @TearDown(Level.Iteration)
+        public void end(Shared shared) {
+            shared.scope.end();
+        }
+
+    }
+
+    private static ProceedingJoinPoint joinPoint() {
+        final Object result = new Object();
+        return (ProceedingJoinPoint) Proxy.newProxyInstance(
+            ProceedingJoinPoint.class.getClassLoader(),
+            new Class<?>[] {ProceedingJoinPoint.class},
+            new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("proceed".equals(method.getName())) {
+                        return result;
+                    } else if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    } else if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    } else if ("toString".equals(method.getName())) {
+                        return "benchmark";
+                    } else {
+                        return null;
+                    }
+                }
+
+            }
+        );
+    }
+
+    /**
+     * Proceeds the join point without any advice.
+     *
+     * @param shared the shared state
+     * @return the result of the join point
+     * @throws Throwable should not happen
+     */
+    @Benchmark
+    public Object baseline(Shared shared) throws Throwable {
+        return shared.point.proceed();
+    }
+
+    /**
+     * Invokes the advice outside of a unit of work, i.e. the advice begins and ends one.
+     *
+     * @param shared the shared state
+     * @return the result of the join point
+     */
+    @Benchmark
+    public Object managed(Shared shared) {
+        return shared.aspect.aroundUnitOfWork(shared.point);
+    }
+
+    /**
+     * Invokes the advice inside of an active unit of work, i.e. the advice joins it.
+     *
+     * @param shared the shared state
+     * @param active the active unit of work
+     * @return the result of the join point
+     */
+    @Benchmark
+    public Object joined(Shared shared, Active active) {
+        return shared.aspect.aroundUnitOfWork(shared.point);
+    }
+
+}
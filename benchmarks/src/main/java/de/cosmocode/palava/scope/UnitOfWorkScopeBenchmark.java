@@ -0,0 +1,84 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ThreadLocalUnitOfWorkScope#begin()} and {@link ThreadLocalUnitOfWorkScope#end()}
+ * of an empty unit of work and compares it to the handle based {@link UnitOfWorkScopes#open(UnitOfWorkScope)}.
+ * The scope is shared by all benchmark threads.
+ *
+ * @since 2.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnitOfWorkScopeBenchmark {
+
+    private ThreadLocalUnitOfWorkScope scope;
+
+    @Setup
+    public void setUp() {
+        scope = new ThreadLocalUnitOfWorkScope();
+        scope.setStrategy(Benchmarks.strategy());
+    }
+
+    /**
+     * Begins and ends an empty unit of work.
+     */
+    @Benchmark
+    public void beginEnd() {
+        scope.begin();
+        scope.end();
+    }
+
+    /**
+     * Checks for an active unit of work, then begins and ends an empty one,
+     * the way advised methods used to manage their unit of work.
+     */
+    @Benchmark
+    public void checkBeginEnd() {
+        if (!scope.isActive()) {
+            scope.begin();
+            scope.end();
+        }
+    }
+
+    /**
+     * Opens and closes an empty unit of work using a handle.
+     */
+    @Benchmark
+    public void openClose() {
+        UnitOfWorkScopes.open(scope).close();
+    }
+
+}
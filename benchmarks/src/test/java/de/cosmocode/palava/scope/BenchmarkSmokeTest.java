@@ -0,0 +1,242 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Smoke tests the benchmarks by running every benchmark method a few times, outside
+ * of JMH, using the first value of every {@link Param}. States are created and
+ * set up and torn down just like JMH does, with fresh states per benchmark method.
+ * This doesn't measure anything, but catches benchmarks which fail on the code
+ * paths they are supposed to measure.
+ *
+ * @since 2.1
+ */
+public final class BenchmarkSmokeTest {
+
+    private static final String CHALLENGE = 
+        "Today's password is swordfish. I understand instantiating Blackholes directly is dangerous.";
+    
+    private static final int INVOCATIONS = 3;
+    
+    private static final Level[] LEVELS = {Level.Trial, Level.Iteration, Level.Invocation};
+
+    /**
+     * Runs all benchmark methods of the given class.
+     *
+     * @param type the benchmark class
+     * @throws Exception if a benchmark failed
+     */
+    private void run(Class<?> type) throws Exception {
+        for (Method method : type.getMethods()) {
+            if (!method.isAnnotationPresent(Benchmark.class)) continue;
+            
+            // in creation order, dependencies first
+            final Map<Class<?>, Object> states = Maps.newLinkedHashMap();
+            final Object benchmark = state(type, states);
+            for (int i = 0; i < INVOCATIONS; i++) {
+                method.invoke(benchmark, arguments(method, states));
+            }
+            
+            final List<Object> created = Lists.newArrayList(states.values());
+            Collections.reverse(created);
+            for (Object state : created) {
+                for (int i = LEVELS.length - 1; i >= 0; i--) {
+                    invoke(state, TearDown.class, LEVELS[i], states);
+                }
+            }
+        }
+    }
+    
+    private Object state(Class<?> type, Map<Class<?>, Object> states) throws Exception {
+        final Object existing = states.get(type);
+        if (existing != null) return existing;
+        
+        final Object state;
+        if (type == Blackhole.class) {
+            state = new Blackhole(CHALLENGE);
+        } else {
+            final Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            state = constructor.newInstance();
+            for (Field field : type.getDeclaredFields()) {
+                final Param param = field.getAnnotation(Param.class);
+                if (param == null) continue;
+                field.setAccessible(true);
+                field.set(state, valueOf(field.getType(), param.value()[0]));
+            }
+            for (Level level : LEVELS) {
+                invoke(state, Setup.class, level, states);
+            }
+        }
+        states.put(type, state);
+        return state;
+    }
+    
+    private Object valueOf(Class<?> type, String value) {
+        if (type == boolean.class) {
+            return Boolean.valueOf(value);
+        } else if (type == int.class) {
+            return Integer.valueOf(value);
+        } else if (type == String.class) {
+            return value;
+        } else {
+            throw new IllegalArgumentException("Unsupported parameter type " + type);
+        }
+    }
+    
+    private Object[] arguments(Method method, Map<Class<?>, Object> states) throws Exception {
+        final Class<?>[] types = method.getParameterTypes();
+        final Object[] arguments = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            arguments[i] = state(types[i], states);
+        }
+        return arguments;
+    }
+    
+    private void invoke(Object state, Class<? extends Annotation> annotation, Level level,
+        Map<Class<?>, Object> states) throws Exception {
+        for (Method method : state.getClass().getMethods()) {
+            final Object found = method.getAnnotation(annotation);
+            if (found == null) continue;
+            final Level actual = found instanceof Setup ? Setup.class.cast(found).value() : 
+                TearDown.class.cast(found).value();
+            if (actual == level) {
+                method.invoke(state, arguments(method, states));
+            }
+        }
+    }
+    
+    /**
+     * Runs the {@link AllocationBenchmark}.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void allocation() throws Exception {
+        run(AllocationBenchmark.class);
+    }
+    
+    /**
+     * Runs the {@link DestroyBenchmark}.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void destroy() throws Exception {
+        run(DestroyBenchmark.class);
+    }
+    
+    /**
+     * Runs the {@link ScopeContextBenchmark}.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void scopeContext() throws Exception {
+        run(ScopeContextBenchmark.class);
+    }
+    
+    /**
+     * Runs the {@link ScopingProviderBenchmark}.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void scopingProvider() throws Exception {
+        run(ScopingProviderBenchmark.class);
+    }
+    
+    /**
+     * Runs the {@link SingletonContentionBenchmark}.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void singletonContention() throws Exception {
+        run(SingletonContentionBenchmark.class);
+    }
+    
+    /**
+     * Runs the {@link SingletonUnitOfWorkScopeBenchmark}.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void singletonUnitOfWorkScope() throws Exception {
+        run(SingletonUnitOfWorkScopeBenchmark.class);
+    }
+    
+    /**
+     * Runs the {@link ThreadPerRequestBenchmark} using platform threads.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void threadPerRequest() throws Exception {
+        run(ThreadPerRequestBenchmark.class);
+    }
+    
+    /**
+     * Runs the {@link UnitOfWorkBenchmark}.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void unitOfWork() throws Exception {
+        run(UnitOfWorkBenchmark.class);
+    }
+    
+    /**
+     * Runs the {@link UnitOfWorkScopeAspectBenchmark}.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void unitOfWorkScopeAspect() throws Exception {
+        run(UnitOfWorkScopeAspectBenchmark.class);
+    }
+    
+    /**
+     * Runs the {@link UnitOfWorkScopeBenchmark}.
+     *
+     * @throws Exception if the benchmark failed
+     */
+    @Test
+    public void unitOfWorkScope() throws Exception {
+        run(UnitOfWorkScopeBenchmark.class);
+    }
+
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Key;
+import com.google.inject.Scope;
+
+/**
+ * Abstract {@link ScopeListener} implementation which ignores all events.
+ *
+ * @since 2.1
+ */
+@Beta
+public abstract class AbstractScopeListener implements ScopeListener {
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void onBegin(Scope scope) {
+
+    }
+
+    @Override
+    public void onEnd(Scope scope) {
+
+    }
+
+    @Override
+    public void onProvision(Scope scope, Key<?> key, boolean hit, long nanos) {
+
+    }
+
+    @Override
+    public void onDestroy(Scope scope, Object object, long nanos, Exception failure) {
+
+    }
+
+}
@@ -26,6 +26,41 @@ import com.google.common.base.Preconditions;
  */
 public abstract class AbstractUnitOfWorkScope extends DestroyingScope implements UnitOfWorkScope {
     
+    /**
+     * Joins the active unit of work or begins a new one. Subclasses may override
+     * this method to avoid redundant lookups of the current unit of work.
+     *
+     * @since 2.1
+     * @return a handle which has to be closed afterwards
+     */
+    public UnitOfWorkHandle open() {
+        return UnitOfWorkScopes.openGeneric(this);
+    }
+    
+    /**
+     * Notifies the bound {@link ScopeListener}s, if any, that a unit of work began.
+     *
+     * @since 2.1
+     */
+    protected final void fireBegin() {
+        final ScopeListener listener = getListener();
+        if (listener != null) {
+            listener.onBegin(this);
+        }
+    }
+    
+    /**
+     * Notifies the bound {@link ScopeListener}s, if any, that a unit of work ended.
+     *
+     * @since 2.1
+     */
+    protected final void fireEnd() {
+        final ScopeListener listener = getListener();
+        if (listener != null) {
+            listener.onEnd(this);
+        }
+    }
+    
     protected final boolean isNotActive() {
         return !isActive();
     }
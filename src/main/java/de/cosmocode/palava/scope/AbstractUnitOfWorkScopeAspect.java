@@ -66,19 +66,14 @@ public abstract class AbstractUnitOfWorkScopeAspect extends PalavaAspect {
     @Around("unitOfWork()")
     public final Object aroundUnitOfWork(ProceedingJoinPoint point) {
         checkState();
-        log.trace("Handling UnitOfWorkScope at {}", point.getStaticPart());
-        if (scope.isActive()) {
-            log.trace("UnitOfWorkScope already in progress");
+        if (log.isTraceEnabled()) {
+            log.trace("Handling UnitOfWorkScope at {}", point.getStaticPart());
+        }
+        final UnitOfWorkHandle handle = UnitOfWorkScopes.open(scope);
+        try {
             return proceed(point);
-        } else {
-            log.trace("Beginning managed UnitOfWorkScope");
-            scope.begin();
-            try {
-                return proceed(point);
-            } finally {
-                scope.end();
-                log.trace("Ended managed UnitOfWorkScope");
-            }
+        } finally {
+            handle.close();
         }
     }
     
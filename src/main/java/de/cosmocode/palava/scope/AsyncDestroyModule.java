@@ -0,0 +1,41 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+
+/**
+ * Binds {@link DestroyExecutor} to a thread pool backed implementation, which
+ * enables asynchronous destruction at the end of all scopes of this package.
+ * The queue size, the number of threads and the {@link DestroyBackpressure} policy
+ * can be configured using {@link ScopeConfig}. Errors are reported to the
+ * bound {@link DestroyErrorHandler}, if any, or logged otherwise.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class AsyncDestroyModule implements Module {
+
+    @Override
+    public void configure(Binder binder) {
+        binder.bind(DestroyExecutor.class).to(ThreadPoolDestroyExecutor.class).in(Singleton.class);
+    }
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link UnitOfWorkScope} which binds its context to the current thread for
+ * exactly the extent of a {@link Callable} or {@link Runnable} body, modelled after
+ * {@code java.lang.ScopedValue}. The binding is always removed when the body
+ * completes, even if it fails, so a body can't leave its unit of work behind.
+ *
+ * <p>
+ *   {@link #begin()}, {@link #end()} and {@link UnitOfWorkScopes#open(UnitOfWorkScope)}
+ *   use the same binding, so this scope can be used wherever a {@link UnitOfWorkScope}
+ *   is expected, e.g. by the {@link UnitOfWork} aspect. Like with every other unit of
+ *   work scope, a missing {@link #end()} leaves the unit of work bound to the thread.
+ * </p>
+ *
+ * <p>
+ *   This is not a {@code ScopedValue} based implementation, which is not available on the
+ *   platforms this library targets. The binding is held by a {@link ThreadLocal}, so looking
+ *   up the current unit of work costs the same as in the {@link ThreadLocalUnitOfWorkScope}
+ *   and every thread inside a unit of work, including virtual threads, holds one thread local
+ *   entry until the unit of work ends. See the {@code UnitOfWorkBenchmark}.
+ * </p>
+ *
+ * @since 2.1
+ */
+@Beta
+public final class BoundUnitOfWorkScope extends ContextUnitOfWorkScope {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BoundUnitOfWorkScope.class);
+    
+    private final ThreadLocal<ScopeContext> context = new ThreadLocal<ScopeContext>();
+    
+    // the handle which opened the unit of work of the current thread, if any
+    private final ThreadLocal<UnitOfWorkHandle> owner = new ThreadLocal<UnitOfWorkHandle>();
+    
+    BoundUnitOfWorkScope() {
+        
+    }
+    
+    @Override
+    public UnitOfWorkHandle open() {
+        if (context.get() != null) return UnitOfWorkScopes.joined();
+        final Handle handle = new Handle(enter());
+        owner.set(handle);
+        return handle;
+    }
+    
+    @Override
+    public void begin() {
+        enter();
+    }
+    
+    /**
+     * Runs the given body inside a new unit of work.
+     *
+     * @since 2.1
+     * @param <V> the generic result type
+     * @param body the body
+     * @return the result of the body
+     * @throws Exception if the body failed
+     * @throws NullPointerException if body is null
+     * @throws IllegalStateException if a unit of work is already in progress
+     */
+    public <V> V call(Callable<V> body) throws Exception {
+        Preconditions.checkNotNull(body, "Body");
+        final ScopeContext currentContext = enter();
+        try {
+            return body.call();
+        } finally {
+            exit(currentContext);
+        }
+    }
+    
+    /**
+     * Runs the given body inside a new unit of work.
+     *
+     * @since 2.1
+     * @param body the body
+     * @throws NullPointerException if body is null
+     * @throws IllegalStateException if a unit of work is already in progress
+     */
+    public void run(Runnable body) {
+        Preconditions.checkNotNull(body, "Body");
+        final ScopeContext currentContext = enter();
+        try {
+            body.run();
+        } finally {
+            exit(currentContext);
+        }
+    }
+    
+    private ScopeContext enter() {
+        checkNotActive();
+        LOG.trace("Entering {}", this);
+        final ScopeContext currentContext = newContext();
+        context.set(currentContext);
+        LOG.trace("Entered {}", this);
+        fireBegin();
+        return currentContext;
+    }
+    
+    private void exit(ScopeContext currentContext) {
+        LOG.trace("Exiting {}", this);
+        
+        try {
+            endAllNested();
+            endPropagation();
+        } finally {
+            try {
+                destroyContext(currentContext);
+            } finally {
+                context.remove();
+                owner.remove();
+            }
+        }
+        
+        LOG.trace("Successfully exited {}", this);
+        fireEnd();
+    }
+
+    @Override
+    public boolean isActive() {
+        return context.get() != null;
+    }
+    
+    @Override
+    public ScopeContext get() {
+        return context.get();
+    }
+    
+    @Override
+    ScopeContext attach(ScopeContext attached) {
+        final ScopeContext previous = context.get();
+        context.set(attached);
+        return previous;
+    }
+    
+    @Override
+    void restore(ScopeContext previous) {
+        if (previous == null) {
+            context.remove();
+        } else {
+            context.set(previous);
+        }
+    }
+    
+    @Override
+    public void end() {
+        checkActive();
+        checkNotAttached();
+        endAllNested();
+        exit(context.get());
+    }
+    
+    /**
+     * A handle owning the unit of work it opened. Ownership is tracked by identity of
+     * the handle, because the context of the current thread may be replaced by {@link #share()}.
+     *
+     * @since 2.1
+     */
+    private final class Handle implements UnitOfWorkHandle {
+        
+        private final ScopeContext opened;
+        
+        Handle(ScopeContext opened) {
+            this.opened = opened;
+        }
+        
+        @Override
+        public boolean isOwner() {
+            return true;
+        }
+        
+        @Override
+        public void close() {
+            Preconditions.checkState(owner.get() == this,
+                "Unit of work of %s has already been closed", BoundUnitOfWorkScope.this);
+            exit(opened);
+        }
+        
+    }
+
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapEvictionListener;
+import com.google.common.collect.MapMaker;
+import com.google.inject.Inject;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * A process-wide scope for bindings which are expensive to create but safe to reuse
+ * across units of work, e.g. parsed configurations, compiled templates or clients.
+ * Unlike the {@link SingletonUnitOfWorkScope} the lifetime of cached instances is
+ * bounded by a time to live, an idle timeout and a maximum size, all of which can
+ * be configured using {@link ScopeConfig}. Evicted instances are destroyed using the
+ * bound {@link DestroyStrategy} and the bound {@link DestroyExecutor}, install the
+ * {@link AsyncDestroyModule} to destroy them off the request thread. Concurrent
+ * callers share one creation of a missing instance.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class CacheScope extends DestroyingScope implements SupplyingScope,
+    MapEvictionListener<Object, Object>, Disposable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheScope.class);
+
+    private final ScopingOptions options = new ScopingOptions();
+
+    private int maximumSize = -1;
+
+    private long expireAfterWrite;
+
+    private long expireAfterAccess;
+
+    private TimeUnit expirationUnit = TimeUnit.SECONDS;
+
+    // created on first access, after this scope has been configured
+    private volatile ScopeContext context;
+
+    CacheScope() {
+        options.setSingleFlight(true);
+    }
+
+    @Inject(optional = true)
+    void setMaximumSize(@Named(ScopeConfig.CACHE_MAXIMUM_SIZE) int maximumSize) {
+        Preconditions.checkArgument(maximumSize >= 0, "MaximumSize must not be negative");
+        this.maximumSize = maximumSize;
+    }
+
+    @Inject(optional = true)
+    void setExpireAfterWrite(@Named(ScopeConfig.CACHE_EXPIRE_AFTER_WRITE) long expireAfterWrite) {
+        Preconditions.checkArgument(expireAfterWrite > 0, "ExpireAfterWrite must be positive");
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    @Inject(optional = true)
+    void setExpireAfterAccess(@Named(ScopeConfig.CACHE_EXPIRE_AFTER_ACCESS) long expireAfterAccess) {
+        Preconditions.checkArgument(expireAfterAccess > 0, "ExpireAfterAccess must be positive");
+        this.expireAfterAccess = expireAfterAccess;
+    }
+
+    @Inject(optional = true)
+    void setExpirationUnit(@Named(ScopeConfig.CACHE_EXPIRATION_UNIT) TimeUnit expirationUnit) {
+        this.expirationUnit = Preconditions.checkNotNull(expirationUnit, "ExpirationUnit");
+    }
+
+    @Inject(optional = true)
+    void setSingleFlight(@Named(ScopeConfig.SINGLE_FLIGHT) boolean singleFlight) {
+        options.setSingleFlight(singleFlight);
+    }
+
+    @Inject(optional = true)
+    void setEncoder(KeyEncoder encoder) {
+        options.setEncoder(encoder);
+    }
+
+    @Override
+    void setListener(ScopeListener listener) {
+        super.setListener(listener);
+        options.setListener(listener);
+    }
+
+    @Override
+    ScopingOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+        return new ScopingProvider<T>(this, key, unscoped, options);
+    }
+
+    @Override
+    public ScopeContext get() {
+        ScopeContext current = context;
+        if (current == null) {
+            synchronized (this) {
+                current = context;
+                if (current == null) {
+                    current = new CacheScopeContext(newMap());
+                    context = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private ConcurrentMap<Object, Object> newMap() {
+        final MapMaker maker = new MapMaker();
+        if (maximumSize >= 0) {
+            maker.maximumSize(maximumSize);
+        }
+        if (expireAfterWrite > 0) {
+            maker.expireAfterWrite(expireAfterWrite, expirationUnit);
+        }
+        if (expireAfterAccess > 0) {
+            maker.expireAfterAccess(expireAfterAccess, expirationUnit);
+        }
+        LOG.debug("Creating {} with maximum size {}, time to live {} and idle timeout {} {}", new Object[] {
+            this, maximumSize, expireAfterWrite, expireAfterAccess, expirationUnit
+        });
+        return maker.evictionListener(this).makeMap();
+    }
+
+    @Override
+    public void onEviction(Object key, final Object value) {
+        LOG.trace("Evicted {} from {}", key, this);
+        if (value == null) return;
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    destroy(Collections.singleton(value));
+                /* CHECKSTYLE:OFF */
+                } catch (RuntimeException e) {
+                /* CHECKSTYLE:ON */
+                    LOG.warn("Failed to destroy evicted " + value, e);
+                }
+            }
+
+        });
+    }
+
+    /**
+     * Removes all cached instances and destroys them. Instances provisioned
+     * concurrently may stay cached, but every removed instance is destroyed
+     * exactly once.
+     *
+     * @since 2.1
+     */
+    public void invalidateAll() {
+        final ScopeContext current = context;
+        if (current == null) return;
+        final List<Object> removed = Lists.newArrayList();
+        for (Map.Entry<Object, Object> entry : current.entrySet()) {
+            // entries replaced or removed concurrently are not ours to destroy
+            if (current.remove(entry.getKey(), entry.getValue())) {
+                removed.add(entry.getValue());
+            }
+        }
+        destroy(removed);
+    }
+
+    @Override
+    public void dispose() throws LifecycleException {
+        invalidateAll();
+    }
+
+    /**
+     * The {@link ScopeContext} of a {@link CacheScope}.
+     *
+     * @since 2.1
+     */
+    private static final class CacheScopeContext extends AbstractScopeContext {
+
+        private final ConcurrentMap<Object, Object> map;
+
+        CacheScopeContext(ConcurrentMap<Object, Object> map) {
+            this.map = map;
+        }
+
+        @Override
+        protected ConcurrentMap<Object, Object> delegate() {
+            return map;
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * The {@link ScopeContext} of a nested unit of work. Reads fall through to the
+ * parent context, all writes go to an overlay which holds the instances
+ * of the nested unit of work only. The parent is never modified or copied.
+ *
+ * @since 2.1
+ */
+final class ChildScopeContext extends AbstractMap<Object, Object> implements ScopeContext {
+
+    private final ScopeContext parent;
+
+    private final ScopeContext overlay;
+
+    ChildScopeContext(ScopeContext parent, ScopeContext overlay) {
+        this.parent = Preconditions.checkNotNull(parent, "Parent");
+        this.overlay = Preconditions.checkNotNull(overlay, "Overlay");
+    }
+
+    ScopeContext getParent() {
+        return parent;
+    }
+
+    ScopeContext getOverlay() {
+        return overlay;
+    }
+
+    @Override
+    public Object get(Object key) {
+        final Object value = overlay.get(key);
+        if (value == null && !overlay.containsKey(key)) {
+            return parent.get(key);
+        } else {
+            return value;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return overlay.containsKey(key) || parent.containsKey(key);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        return overlay.put(key, value);
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        if (parent.containsKey(key)) {
+            return parent.get(key);
+        } else {
+            return overlay.putIfAbsent(key, value);
+        }
+    }
+
+    /**
+     * Removes the given key from the overlay, the parent is not modified.
+     */
+    @Override
+    public Object remove(Object key) {
+        return overlay.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return overlay.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        return overlay.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public Object replace(Object key, Object value) {
+        return overlay.replace(key, value);
+    }
+
+    /**
+     * Clears the overlay, the parent is not modified.
+     */
+    @Override
+    public void clear() {
+        overlay.clear();
+    }
+
+    @Override
+    public int size() {
+        return snapshot().size();
+    }
+
+    @Override
+    public Set<Entry<Object, Object>> entrySet() {
+        return Collections.unmodifiableSet(snapshot().entrySet());
+    }
+
+    private Map<Object, Object> snapshot() {
+        final Map<Object, Object> snapshot = Maps.newHashMap(parent);
+        snapshot.putAll(overlay);
+        return snapshot;
+    }
+
+}
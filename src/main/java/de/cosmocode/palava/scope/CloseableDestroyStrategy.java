@@ -31,10 +31,15 @@ import com.google.common.annotations.Beta;
  * @author Willi Schoenborn
  */
 @Beta
-public final class CloseableDestroyStrategy implements DestroyStrategy {
+public final class CloseableDestroyStrategy implements SelectiveDestroyStrategy {
     
     private static final Logger LOG = LoggerFactory.getLogger(CloseableDestroyStrategy.class);
 
+    @Override
+    public boolean appliesTo(Class<?> type) {
+        return Closeable.class.isAssignableFrom(type);
+    }
+
     @Override
     public void destroy(Object object, DestroyErrors errors) {
         if (object instanceof Closeable) {
@@ -16,30 +16,74 @@
 
 package de.cosmocode.palava.scope;
 
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.inject.Inject;
 
 /**
  * A compound {@link DestroyStrategy} which combines multiple strategies
- * into one.
+ * into one. The strategies applying to a concrete type are resolved once
+ * per type, see {@link SelectiveDestroyStrategy}.
  *
  * @since 2.0
  * @author Willi Schoenborn
  */
-final class CompoundDestroyStrategy implements DestroyStrategy {
+final class CompoundDestroyStrategy implements SelectiveDestroyStrategy {
 
-    private final Iterable<DestroyStrategy> strategies;
+    private final List<DestroyStrategy> strategies;
+    
+    // weak keys allow classes to be unloaded
+    private final ConcurrentMap<Class<?>, DestroyStrategy[]> dispatch = new MapMaker().weakKeys().makeComputingMap(
+        new Function<Class<?>, DestroyStrategy[]>() {
+            
+            @Override
+            public DestroyStrategy[] apply(Class<?> type) {
+                return applicableTo(type);
+            }
+            
+        }
+    );
     
     @Inject
     CompoundDestroyStrategy(Set<DestroyStrategy> strategies) {
-        this.strategies = Preconditions.checkNotNull(strategies, "Strategies");
+        Preconditions.checkNotNull(strategies, "Strategies");
+        this.strategies = ImmutableList.copyOf(strategies);
+    }
+    
+    private DestroyStrategy[] applicableTo(Class<?> type) {
+        final List<DestroyStrategy> applicable = Lists.newArrayList();
+        for (DestroyStrategy strategy : strategies) {
+            if (strategy instanceof SelectiveDestroyStrategy) {
+                if (SelectiveDestroyStrategy.class.cast(strategy).appliesTo(type)) {
+                    applicable.add(strategy);
+                }
+            } else {
+                applicable.add(strategy);
+            }
+        }
+        return applicable.toArray(new DestroyStrategy[applicable.size()]);
+    }
+    
+    @Override
+    public boolean appliesTo(Class<?> type) {
+        return dispatch.get(type).length > 0;
     }
     
     @Override
     public void destroy(Object instance, DestroyErrors errors) {
-        for (DestroyStrategy strategy : strategies) {
+        if (instance == null) return;
+        
+        // nothing to do for most instances
+        final DestroyStrategy[] applicable = dispatch.get(instance.getClass());
+        
+        for (DestroyStrategy strategy : applicable) {
             strategy.destroy(instance, errors);
         }
     }
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Key;
+import com.google.inject.Scope;
+
+/**
+ * A compound {@link ScopeListener} which notifies multiple listeners
+ * and isolates them from each other's failures. Whether one of the listeners
+ * is always enabled is decided once, in which case {@link #isEnabled()} doesn't
+ * have to ask the others.
+ *
+ * @since 2.1
+ */
+final class CompoundScopeListener implements ScopeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompoundScopeListener.class);
+
+    private final ScopeListener[] listeners;
+
+    // true if one of the listeners can't be disabled
+    private final boolean alwaysEnabled;
+
+    private CompoundScopeListener(Set<ScopeListener> listeners) {
+        this.listeners = listeners.toArray(new ScopeListener[listeners.size()]);
+        boolean any = false;
+        for (ScopeListener listener : this.listeners) {
+            any |= isAlwaysEnabled(listener);
+        }
+        this.alwaysEnabled = any;
+    }
+
+    private static boolean isAlwaysEnabled(ScopeListener listener) {
+        if (listener instanceof ScopeStatistics) {
+            return true;
+        }
+        try {
+            return listener.getClass().getMethod("isEnabled").getDeclaringClass() == AbstractScopeListener.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Combines the given listeners.
+     *
+     * @param listeners the listeners
+     * @return a listener notifying all of the given listeners or null if there are none
+     */
+    static ScopeListener of(Set<ScopeListener> listeners) {
+        Preconditions.checkNotNull(listeners, "Listeners");
+        return listeners.isEmpty() ? null : new CompoundScopeListener(listeners);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        if (alwaysEnabled) return true;
+        for (ScopeListener listener : listeners) {
+            if (listener.isEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onBegin(Scope scope) {
+        for (ScopeListener listener : listeners) {
+            try {
+                listener.onBegin(scope);
+            } catch (RuntimeException e) {
+                LOG.warn("Listener " + listener + " failed on begin of " + scope, e);
+            }
+        }
+    }
+
+    @Override
+    public void onEnd(Scope scope) {
+        for (ScopeListener listener : listeners) {
+            try {
+                listener.onEnd(scope);
+            } catch (RuntimeException e) {
+                LOG.warn("Listener " + listener + " failed on end of " + scope, e);
+            }
+        }
+    }
+
+    @Override
+    public void onProvision(Scope scope, Key<?> key, boolean hit, long nanos) {
+        for (ScopeListener listener : listeners) {
+            try {
+                listener.onProvision(scope, key, hit, nanos);
+            } catch (RuntimeException e) {
+                LOG.warn("Listener " + listener + " failed on provision of " + key, e);
+            }
+        }
+    }
+
+    @Override
+    public void onDestroy(Scope scope, Object object, long nanos, Exception failure) {
+        for (ScopeListener listener : listeners) {
+            try {
+                listener.onDestroy(scope, object, nanos, failure);
+            } catch (RuntimeException e) {
+                LOG.warn("Listener " + listener + " failed on destruction of " + object, e);
+            }
+        }
+    }
+
+}
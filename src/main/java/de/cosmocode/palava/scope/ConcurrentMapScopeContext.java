@@ -28,22 +28,31 @@ import com.google.common.collect.Maps;
  */
 public abstract class ConcurrentMapScopeContext extends AbstractScopeContext {
 
-    private ConcurrentMap<Object, Object> context;
+    // created on first access, contexts may be shared by multiple threads
+    private volatile ConcurrentMap<Object, Object> context;
 
     @Override
     protected final ConcurrentMap<Object, Object> delegate() {
-        if (context == null) {
-            context = Maps.newConcurrentMap();
+        ConcurrentMap<Object, Object> current = context;
+        if (current == null) {
+            synchronized (this) {
+                current = context;
+                if (current == null) {
+                    current = Maps.newConcurrentMap();
+                    context = current;
+                }
+            }
         }
-        return context;
+        return current;
     }
     
     @Override
     public void clear() {
-        if (context == null) {
+        final ConcurrentMap<Object, Object> current = context;
+        if (current == null) {
             return;
         } else {
-            context.clear();
+            current.clear();
         }
     }
     
@@ -0,0 +1,303 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+
+/**
+ * Abstract {@link UnitOfWorkScope} implementation which creates one {@link ScopeContext}
+ * per unit of work and provides scoped instances using {@link ScopingProvider}s.
+ * Nested units of work use a {@link ChildScopeContext} on top of the current context.
+ *
+ * @since 2.1
+ */
+abstract class ContextUnitOfWorkScope extends AbstractUnitOfWorkScope
+    implements SupplyingScope, NestableUnitOfWorkScope {
+
+    private final ScopingOptions options = new ScopingOptions();
+    
+    private boolean indexed;
+    
+    private ScopeContextFactory factory;
+    
+    // propagated contexts by identity, guarded by itself
+    private final Map<ScopeContext, Propagation> propagations = new IdentityHashMap<ScopeContext, Propagation>();
+    
+    // the size of propagations, which allows ending units of work without locking
+    private volatile int propagated;
+    
+    @Inject(optional = true)
+    void setIndexed(@Named(ScopeConfig.INDEXED) boolean indexed) {
+        this.indexed = indexed;
+    }
+    
+    @Inject(optional = true)
+    void setSingleFlight(@Named(ScopeConfig.SINGLE_FLIGHT) boolean singleFlight) {
+        options.setSingleFlight(singleFlight);
+    }
+    
+    @Inject(optional = true)
+    void setEncoder(KeyEncoder encoder) {
+        options.setEncoder(encoder);
+    }
+    
+    @Override
+    void setListener(ScopeListener listener) {
+        super.setListener(listener);
+        options.setListener(listener);
+    }
+    
+    @Inject(optional = true)
+    void setFactory(ScopeContextFactory factory) {
+        this.factory = Preconditions.checkNotNull(factory, "Factory");
+    }
+    
+    @Override
+    ScopingOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+        return new ScopingProvider<T>(this, key, unscoped, options);
+    }
+    
+    /**
+     * Creates a new and empty context for a unit of work.
+     *
+     * @since 2.1
+     * @return a new context
+     */
+    protected final ScopeContext newContext() {
+        if (factory == null) {
+            return indexed ? new SlotScopeContext(options.getSlots()) : new DefaultScopeContext();
+        } else {
+            return factory.create();
+        }
+    }
+    
+    /**
+     * Prepares the context of the current unit of work to be accessed by other threads
+     * using the bound {@link ScopeContextFactory}, if any.
+     *
+     * @since 2.1
+     * @return the thread-safe context of the current unit of work or null if there is none
+     */
+    final ScopeContext share() {
+        final ScopeContext current = get();
+        if (current == null || factory == null) return current;
+        final ScopeContext shared = share(current);
+        if (shared != current) {
+            attach(shared);
+        }
+        return shared;
+    }
+    
+    /**
+     * Provides the propagation of the given shared context, which tracks the tasks using it.
+     *
+     * @since 2.1
+     * @param shared the context returned by {@link #share()}
+     * @return the propagation of the given context
+     */
+    final Propagation propagation(ScopeContext shared) {
+        synchronized (propagations) {
+            Propagation propagation = propagations.get(shared);
+            if (propagation == null) {
+                propagation = new Propagation();
+                propagations.put(shared, propagation);
+                propagated = propagations.size();
+            }
+            return propagation;
+        }
+    }
+    
+    /**
+     * Ends the propagation of the given context, if any, waiting for all tasks using it.
+     *
+     * @param context the ending context
+     */
+    private void endPropagation(ScopeContext context) {
+        if (propagated == 0) return;
+        final Propagation propagation;
+        synchronized (propagations) {
+            propagation = propagations.remove(context);
+            propagated = propagations.size();
+        }
+        if (propagation != null) {
+            propagation.end();
+        }
+    }
+    
+    /**
+     * Ends the propagation of the current context, if any, waiting for all tasks using it.
+     * Has to be called before ending a unit of work.
+     *
+     * @since 2.1
+     */
+    protected final void endPropagation() {
+        endPropagation(get());
+    }
+    
+    /**
+     * Checks that the given context has not been propagated from another thread.
+     *
+     * @param context the context of the current thread
+     * @throws IllegalStateException if the context has been propagated from another thread
+     */
+    private void checkNotPropagated(ScopeContext context) {
+        if (propagated == 0) return;
+        synchronized (propagations) {
+            final Propagation propagation = propagations.get(context);
+            Preconditions.checkState(propagation == null || propagation.isOwner(),
+                "Can't end a unit of work of %s propagated from another thread", this);
+        }
+    }
+    
+    /**
+     * Checks that the current unit of work, including all of its nested units of work,
+     * has not been propagated from another thread.
+     *
+     * @since 2.1
+     * @throws IllegalStateException if the unit of work has been propagated from another thread
+     */
+    protected final void checkNotAttached() {
+        if (propagated == 0) return;
+        ScopeContext context = get();
+        while (context != null) {
+            checkNotPropagated(context);
+            context = context instanceof ChildScopeContext 
+                ? ChildScopeContext.class.cast(context).getParent() : null;
+        }
+    }
+    
+    private ScopeContext share(ScopeContext context) {
+        if (context instanceof ChildScopeContext) {
+            final ChildScopeContext child = ChildScopeContext.class.cast(context);
+            final ScopeContext parent = share(child.getParent());
+            final ScopeContext overlay = factory.share(child.getOverlay());
+            if (parent == child.getParent() && overlay == child.getOverlay()) {
+                return child;
+            } else {
+                return new ChildScopeContext(parent, overlay);
+            }
+        } else {
+            return factory.share(context);
+        }
+    }
+    
+    @Override
+    public final void beginNested() {
+        checkActive();
+        attach(new ChildScopeContext(get(), newContext()));
+    }
+    
+    @Override
+    public final boolean isNested() {
+        return get() instanceof ChildScopeContext;
+    }
+    
+    @Override
+    public final void endNested() {
+        Preconditions.checkState(isNested(), "No nested %s block in progress", this);
+        final ChildScopeContext child = ChildScopeContext.class.cast(get());
+        checkNotPropagated(child);
+        endPropagation(child);
+        try {
+            destroyContext(child.getOverlay());
+        } finally {
+            restore(child.getParent());
+        }
+    }
+    
+    /**
+     * Ends all nested units of work which are still in progress.
+     *
+     * @since 2.1
+     */
+    protected final void endAllNested() {
+        while (isNested()) {
+            endNested();
+        }
+    }
+    
+    /**
+     * Attaches the given context to the current thread, without taking
+     * over its ownership. Used to propagate a unit of work to other threads.
+     *
+     * @since 2.1
+     * @param context the context to attach
+     * @return the context previously attached to the current thread, may be null
+     */
+    abstract ScopeContext attach(ScopeContext context);
+    
+    /**
+     * Restores the given context previously returned by {@link #attach(ScopeContext)}.
+     *
+     * @since 2.1
+     * @param previous the previous context, may be null
+     */
+    abstract void restore(ScopeContext previous);
+    
+    /**
+     * Destroys all instances of the given detached context and clears it afterwards.
+     * Destruction happens asynchronously if a {@link DestroyExecutor} is bound.
+     *
+     * @since 2.1
+     * @param context the context of the ending unit of work
+     */
+    protected final void destroyContext(final ScopeContext context) {
+        execute(new Runnable() {
+            
+            @Override
+            public void run() {
+                try {
+                    destroy(context);
+                } finally {
+                    context.clear();
+                }
+            }
+            
+        });
+    }
+    
+    /**
+     * Destroys all instances of the given context synchronously and clears it
+     * afterwards, which allows the current thread to reuse it for its next unit of work.
+     *
+     * @since 2.1
+     * @param context the context of the ending unit of work
+     * @param errors reusable errors, reset afterwards
+     */
+    protected final void recycleContext(ScopeContext context, DefaultDestroyErrors errors) {
+        try {
+            destroy(context, errors);
+            errors.throwIfNecessary();
+        } finally {
+            errors.reset();
+            context.clear();
+        }
+    }
+    
+}
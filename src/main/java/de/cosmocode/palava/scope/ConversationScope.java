@@ -0,0 +1,568 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * A scope which holds one {@link ScopeContext} per conversation. A conversation is
+ * identified by an arbitrary id and spans any number of requests: {@link #resume(Object)}
+ * binds the current thread to a conversation, {@link #suspend()} releases it and
+ * {@link #end()} ends the conversation for good, destroying its scoped instances.
+ *
+ * <p>
+ *   Conversations which have been idle longer than the configured
+ *   {@link ScopeConfig#CONVERSATION_IDLE_THRESHOLD threshold}, 30 minutes by default,
+ *   get passivated: their {@link Serializable} entries are written to a local file and
+ *   restored lazily on the next access, all other entries and all entries the bound
+ *   {@link DestroyStrategy} applies to are destroyed. Conversations
+ *   which have been idle longer than the configured {@link ScopeConfig#CONVERSATION_TIMEOUT timeout},
+ *   8 hours by default, are considered abandoned and get ended. Idle conversations are looked
+ *   for by a background thread, started on the first {@link #resume(Object)}. Keys are encoded
+ *   using {@link KeyEncoders#compact()} unless another {@link KeyEncoder} is bound, which
+ *   has to produce serializable keys.
+ * </p>
+ *
+ * @since 2.1
+ */
+@Beta
+public final class ConversationScope extends DestroyingScope implements SupplyingScope, Disposable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConversationScope.class);
+
+    private final ScopingOptions options = new ScopingOptions();
+
+    private final ConcurrentMap<Object, Conversation> conversations = Maps.newConcurrentMap();
+
+    private final ThreadLocal<Conversation> current = new ThreadLocal<Conversation>();
+
+    private long idleThreshold = 30;
+
+    private TimeUnit idleThresholdUnit = TimeUnit.MINUTES;
+
+    private long idleThresholdNanos = idleThresholdUnit.toNanos(idleThreshold);
+
+    private long timeout = 8;
+
+    private TimeUnit timeoutUnit = TimeUnit.HOURS;
+
+    private long timeoutNanos = timeoutUnit.toNanos(timeout);
+
+    private String fileName;
+
+    // started on the first resume, after this scope has been configured
+    private volatile ScheduledExecutorService sweeper;
+
+    // created on the first passivation
+    private PassivationFile file;
+
+    ConversationScope() {
+        options.setEncoder(KeyEncoders.compact());
+    }
+
+    @Inject(optional = true)
+    void setIdleThreshold(@Named(ScopeConfig.CONVERSATION_IDLE_THRESHOLD) long idleThreshold) {
+        Preconditions.checkArgument(idleThreshold >= 0, "IdleThreshold must not be negative");
+        this.idleThreshold = idleThreshold;
+        this.idleThresholdNanos = idleThresholdUnit.toNanos(idleThreshold);
+    }
+
+    @Inject(optional = true)
+    void setIdleThresholdUnit(@Named(ScopeConfig.CONVERSATION_IDLE_THRESHOLD_UNIT) TimeUnit idleThresholdUnit) {
+        this.idleThresholdUnit = Preconditions.checkNotNull(idleThresholdUnit, "IdleThresholdUnit");
+        this.idleThresholdNanos = idleThresholdUnit.toNanos(idleThreshold);
+    }
+
+    @Inject(optional = true)
+    void setTimeout(@Named(ScopeConfig.CONVERSATION_TIMEOUT) long timeout) {
+        Preconditions.checkArgument(timeout > 0, "Timeout must be positive");
+        this.timeout = timeout;
+        this.timeoutNanos = timeoutUnit.toNanos(timeout);
+    }
+
+    @Inject(optional = true)
+    void setTimeoutUnit(@Named(ScopeConfig.CONVERSATION_TIMEOUT_UNIT) TimeUnit timeoutUnit) {
+        this.timeoutUnit = Preconditions.checkNotNull(timeoutUnit, "TimeoutUnit");
+        this.timeoutNanos = timeoutUnit.toNanos(timeout);
+    }
+
+    @Inject(optional = true)
+    void setFileName(@Named(ScopeConfig.CONVERSATION_FILE) String fileName) {
+        this.fileName = Preconditions.checkNotNull(fileName, "FileName");
+    }
+
+    @Inject(optional = true)
+    void setEncoder(KeyEncoder encoder) {
+        options.setEncoder(encoder);
+    }
+
+    @Override
+    void setListener(ScopeListener listener) {
+        super.setListener(listener);
+        options.setListener(listener);
+    }
+
+    @Override
+    ScopingOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+        return new ScopingProvider<T>(this, key, unscoped, options);
+    }
+
+    /**
+     * Binds the current thread to the conversation with the given id, which
+     * will be started if it does not exist yet. Multiple threads may take
+     * part in the same conversation concurrently.
+     *
+     * @since 2.1
+     * @param id the conversation id
+     * @throws NullPointerException if id is null
+     * @throws IllegalStateException if the current thread is already bound to a conversation
+     */
+    public void resume(Object id) {
+        Preconditions.checkNotNull(id, "Id");
+        Preconditions.checkState(current.get() == null, "%s block already in progress", this);
+
+        while (true) {
+            Conversation conversation = conversations.get(id);
+            if (conversation == null) {
+                final Conversation started = new Conversation(id);
+                conversation = conversations.putIfAbsent(id, started);
+                if (conversation == null) {
+                    LOG.trace("Started conversation {}", id);
+                    conversation = started;
+                }
+            }
+            if (conversation.enter()) {
+                current.set(conversation);
+                break;
+            }
+            // the conversation ended concurrently, retry
+        }
+
+        if (sweeper == null) {
+            startSweeper();
+        }
+    }
+
+    /**
+     * Releases the current thread from its conversation. The conversation
+     * and its scoped instances remain and can be resumed later.
+     *
+     * @since 2.1
+     * @throws IllegalStateException if the current thread is not bound to a conversation
+     */
+    public void suspend() {
+        final Conversation conversation = current.get();
+        Preconditions.checkState(conversation != null, "No %s block in progress", this);
+        current.remove();
+        final ScopeContext context = conversation.leave();
+        if (context != null) {
+            LOG.trace("Last participant left ended conversation {}", conversation.id);
+            destroyLater(context);
+        }
+    }
+
+    /**
+     * Ends the conversation of the current thread. Its scoped instances are destroyed
+     * once the last thread taking part in the conversation left it, which may be the current one.
+     *
+     * @since 2.1
+     * @throws IllegalStateException if the current thread is not bound to a conversation
+     */
+    public void end() {
+        final Conversation conversation = current.get();
+        Preconditions.checkState(conversation != null, "No %s block in progress", this);
+        current.remove();
+        conversations.remove(conversation.id, conversation);
+        final ScopeContext context = conversation.end();
+        LOG.trace("Ended conversation {}", conversation.id);
+        if (context != null) {
+            destroyLater(context);
+        }
+    }
+
+    private void destroyLater(final ScopeContext context) {
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    destroy(context);
+                } finally {
+                    context.clear();
+                }
+            }
+
+        });
+    }
+
+    /**
+     * Checks whether the current thread is bound to a conversation.
+     *
+     * @since 2.1
+     * @return true if the current thread is bound to a conversation, false otherwise
+     */
+    public boolean isActive() {
+        return current.get() != null;
+    }
+
+    @Override
+    public ScopeContext get() {
+        final Conversation conversation = current.get();
+        return conversation == null ? null : conversation.context();
+    }
+
+    private synchronized void startSweeper() {
+        if (sweeper != null) return;
+        // sweeps at least every second, at most every 1/4 of the shortest idle time
+        final long interval = Math.max(TimeUnit.SECONDS.toNanos(1), Math.min(idleThresholdNanos, timeoutNanos) / 4);
+        LOG.debug("Looking for idle conversations every {}ms", TimeUnit.NANOSECONDS.toMillis(interval));
+        final ScheduledExecutorService started = Executors.newSingleThreadScheduledExecutor(
+            new DestroyThreadFactory("palava-scope-conversation-sweep"));
+        started.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                expireIdle();
+                passivateIdle();
+            }
+
+        }, interval, interval, TimeUnit.NANOSECONDS);
+        sweeper = started;
+    }
+
+    /**
+     * Ends all conversations which have been idle for longer than the configured timeout
+     * and destroys their scoped instances. Called automatically, there is usually no need
+     * to call this method.
+     *
+     * @since 2.1
+     */
+    public void expireIdle() {
+        final long now = System.nanoTime();
+        for (Conversation conversation : conversations.values()) {
+            if (!conversation.expireIfIdle(now)) continue;
+            conversations.remove(conversation.id, conversation);
+            LOG.debug("Expired abandoned conversation {}", conversation.id);
+            final ScopeContext context = conversation.finish();
+            if (context == null) continue;
+            try {
+                destroy(context);
+            /* CHECKSTYLE:OFF */
+            } catch (RuntimeException e) {
+            /* CHECKSTYLE:ON */
+                LOG.warn("Failed to destroy expired conversation " + conversation.id, e);
+            } finally {
+                context.clear();
+            }
+        }
+    }
+
+    /**
+     * Passivates all conversations which have been idle for longer than the configured threshold.
+     * Called automatically, there is usually no need to call this method.
+     *
+     * @since 2.1
+     */
+    public void passivateIdle() {
+        final long now = System.nanoTime();
+        for (Conversation conversation : conversations.values()) {
+            try {
+                conversation.passivateIfIdle(now);
+            /* CHECKSTYLE:OFF */
+            } catch (RuntimeException e) {
+            /* CHECKSTYLE:ON */
+                LOG.warn("Failed to passivate conversation " + conversation.id, e);
+            }
+        }
+    }
+
+    private synchronized PassivationFile getFile() throws IOException {
+        if (file == null) {
+            final File path;
+            if (fileName == null) {
+                path = File.createTempFile("palava-conversations", ".segments");
+                path.deleteOnExit();
+            } else {
+                path = new File(fileName);
+            }
+            LOG.info("Passivating idle conversations to {}", path);
+            file = new PassivationFile(path);
+        }
+        return file;
+    }
+
+    /**
+     * Serializes the given key and value.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the serialized entry or null if key or value are not serializable
+     */
+    private static byte[] serialize(Object key, Object value) {
+        if (!(key instanceof Serializable) || !(value instanceof Serializable)) return null;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            final ObjectOutputStream stream = new ObjectOutputStream(bytes);
+            stream.writeObject(key);
+            stream.writeObject(value);
+            stream.close();
+        } catch (IOException e) {
+            LOG.debug("{} is not serializable: {}", value, e.toString());
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(List<byte[]> entries) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream stream = new DataOutputStream(bytes);
+        stream.writeInt(entries.size());
+        for (byte[] entry : entries) {
+            stream.writeInt(entry.length);
+            stream.write(entry);
+        }
+        stream.close();
+        return bytes.toByteArray();
+    }
+
+    private static ScopeContext deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        final DataInputStream stream = new DataInputStream(new ByteArrayInputStream(bytes));
+        final ScopeContext context = new DefaultScopeContext();
+        final int size = stream.readInt();
+        for (int i = 0; i < size; i++) {
+            final byte[] entry = new byte[stream.readInt()];
+            stream.readFully(entry);
+            final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(entry));
+            context.put(input.readObject(), input.readObject());
+        }
+        return context;
+    }
+
+    @Override
+    public void dispose() throws LifecycleException {
+        synchronized (this) {
+            if (sweeper != null) {
+                sweeper.shutdownNow();
+            }
+        }
+        final List<Conversation> ended = Lists.newArrayList(conversations.values());
+        conversations.clear();
+        for (Conversation conversation : ended) {
+            final ScopeContext context = conversation.finish();
+            if (context == null) continue;
+            try {
+                destroy(context);
+            } finally {
+                context.clear();
+            }
+        }
+        synchronized (this) {
+            if (file == null) return;
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new LifecycleException(e);
+            }
+        }
+    }
+
+    /**
+     * A single conversation, either in memory or passivated.
+     *
+     * @since 2.1
+     */
+    private final class Conversation {
+
+        private final Object id;
+
+        // null while passivated
+        private volatile ScopeContext context = new DefaultScopeContext();
+
+        private PassivationFile.Segment segment;
+
+        private int participants;
+
+        private long lastAccess = System.nanoTime();
+
+        private boolean ended;
+
+        Conversation(Object id) {
+            this.id = id;
+        }
+
+        synchronized boolean enter() {
+            if (ended) return false;
+            participants++;
+            return true;
+        }
+
+        /**
+         * Leaves this conversation.
+         *
+         * @return the scoped instances to destroy if this conversation has been ended
+         *         and the current thread was the last participant, null otherwise
+         */
+        synchronized ScopeContext leave() {
+            participants--;
+            lastAccess = System.nanoTime();
+            return ended && participants == 0 ? finish() : null;
+        }
+
+        ScopeContext context() {
+            final ScopeContext active = context;
+            return active == null ? restore() : active;
+        }
+
+        private synchronized ScopeContext restore() {
+            if (context != null) return context;
+            LOG.trace("Restoring conversation {}", id);
+            final PassivationFile.Segment passivated = segment;
+            segment = null;
+            try {
+                final PassivationFile current = getFile();
+                final byte[] bytes = current.read(passivated);
+                free(current, passivated);
+                context = deserialize(bytes);
+            } catch (IOException e) {
+                context = new DefaultScopeContext();
+                throw new IllegalStateException("Failed to restore conversation " + id, e);
+            } catch (ClassNotFoundException e) {
+                context = new DefaultScopeContext();
+                throw new IllegalStateException("Failed to restore conversation " + id, e);
+            }
+            return context;
+        }
+
+        private void free(PassivationFile current, PassivationFile.Segment passivated) {
+            try {
+                current.free(passivated);
+            } catch (IOException e) {
+                LOG.warn("Failed to free " + current, e);
+            }
+        }
+
+        /**
+         * Marks this conversation as ended if it has been idle for longer than the timeout.
+         *
+         * @param now the current time in terms of {@link System#nanoTime()}
+         * @return true if this conversation has been abandoned, false otherwise
+         */
+        synchronized boolean expireIfIdle(long now) {
+            if (ended || participants > 0 || now - lastAccess < timeoutNanos) return false;
+            ended = true;
+            return true;
+        }
+
+        synchronized void passivateIfIdle(long now) {
+            final ScopeContext active = context;
+            if (ended || active == null || participants > 0 || now - lastAccess < idleThresholdNanos) return;
+
+            final List<byte[]> serialized = Lists.newArrayList();
+            final Map<Object, Object> transients = Maps.newHashMap();
+            for (Map.Entry<Object, Object> entry : active.entrySet()) {
+                // instances which need to be destroyed must not be dropped silently
+                final byte[] bytes = isDestroyable(entry.getValue()) 
+                    ? null : serialize(entry.getKey(), entry.getValue());
+                if (bytes == null) {
+                    transients.put(entry.getKey(), entry.getValue());
+                } else {
+                    serialized.add(bytes);
+                }
+            }
+
+            try {
+                segment = getFile().write(concat(serialized));
+            } catch (IOException e) {
+                LOG.warn("Failed to passivate conversation " + id + ", keeping it in memory", e);
+                return;
+            }
+
+            context = null;
+            LOG.debug("Passivated conversation {}: {} serialized, {} destroyed", new Object[] {
+                id, serialized.size(), transients.size()
+            });
+            destroy(transients);
+        }
+
+        /**
+         * Ends this conversation and leaves it.
+         *
+         * @return the scoped instances to destroy if the current thread was
+         *         the last participant, null otherwise
+         */
+        synchronized ScopeContext end() {
+            ended = true;
+            return leave();
+        }
+
+        /**
+         * Ends this conversation regardless of its participants.
+         *
+         * @return the scoped instances to destroy, null if there are none
+         */
+        synchronized ScopeContext finish() {
+            ended = true;
+            if (context != null) {
+                return context;
+            }
+            final ScopeContext restored;
+            try {
+                restored = restore();
+            } catch (IllegalStateException e) {
+                LOG.warn("Unable to destroy passivated instances of conversation " + id, e);
+                return null;
+            }
+            return restored;
+        }
+
+    }
+
+}
@@ -29,19 +29,32 @@ import com.google.inject.spi.Message;
  */
 final class DefaultDestroyErrors implements DestroyErrors {
     
-    private final Errors errors = new Errors();
+    // created on the first error, most destructions succeed
+    private Errors errors;
 
     @Override
     public void destroyError(Object object, Exception cause) {
+        if (errors == null) {
+            errors = new Errors();
+        }
         final String message = Errors.format("Failed to close %s", object);
         errors.addMessage(new Message(Collections.emptyList(), message, cause));
     }
 
     @Override
     public void throwIfNecessary() {
-        if (errors.hasErrors()) {
+        if (errors != null && errors.hasErrors()) {
             throw new DestroyException(errors.getMessages());
         }
     }
+    
+    /**
+     * Discards all collected errors, which allows to reuse this instance.
+     *
+     * @since 2.1
+     */
+    void reset() {
+        errors = null;
+    }
 
 }
@@ -26,10 +26,15 @@ import org.slf4j.LoggerFactory;
  * @since 2.0
  * @author Willi Schoenborn
  */
-final class DefaultDestroyStrategy implements DestroyStrategy {
+final class DefaultDestroyStrategy implements SelectiveDestroyStrategy {
     
     private static final Logger LOG = LoggerFactory.getLogger(DefaultDestroyStrategy.class);
 
+    @Override
+    public boolean appliesTo(Class<?> type) {
+        return Destroyable.class.isAssignableFrom(type);
+    }
+
     @Override
     public void destroy(Object object, DestroyErrors errors) {
         if (object instanceof Destroyable) {
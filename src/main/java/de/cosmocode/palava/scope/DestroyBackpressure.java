@@ -0,0 +1,69 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Policies for a full {@link DestroyExecutor} queue.
+ *
+ * @since 2.1
+ */
+@Beta
+public enum DestroyBackpressure implements RejectedExecutionHandler {
+
+    /**
+     * Blocks the ending thread until the queue has space again.
+     */
+    BLOCK {
+        
+        @Override
+        public void rejectedExecution(Runnable destruction, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                destruction.run();
+            } else {
+                try {
+                    executor.getQueue().put(destruction);
+                    // the executor may have been shut down in the meantime
+                    if (executor.isShutdown() && executor.remove(destruction)) {
+                        destruction.run();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    destruction.run();
+                }
+            }
+        }
+        
+    },
+    
+    /**
+     * Destroys synchronously on the ending thread.
+     */
+    CALLER_RUNS {
+        
+        @Override
+        public void rejectedExecution(Runnable destruction, ThreadPoolExecutor executor) {
+            destruction.run();
+        }
+        
+    };
+    
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A callback for errors during asynchronous destruction.
+ *
+ * @since 2.1
+ */
+@Beta
+public interface DestroyErrorHandler {
+
+    /**
+     * Handles the given error, usually a {@link RuntimeException} raised
+     * by {@link DestroyErrors#throwIfNecessary()}.
+     *
+     * @since 2.1
+     * @param exception the exception thrown by a destruction
+     */
+    void handle(RuntimeException exception);
+    
+}
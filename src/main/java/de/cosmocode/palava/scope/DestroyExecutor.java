@@ -0,0 +1,41 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Executes the destruction of detached scope contexts, usually off the
+ * thread which ended the scope. Binding an implementation, e.g. using the
+ * {@link AsyncDestroyModule}, enables asynchronous destruction in all
+ * scopes of this package.
+ *
+ * @since 2.1
+ */
+@Beta
+public interface DestroyExecutor {
+
+    /**
+     * Executes the given destruction. Implementations are responsible to report
+     * any {@link RuntimeException} thrown by the destruction.
+     *
+     * @since 2.1
+     * @param destruction the destruction of a detached context
+     */
+    void execute(Runnable destruction);
+    
+}
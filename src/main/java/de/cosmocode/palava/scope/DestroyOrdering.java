@@ -0,0 +1,41 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Assigns instances to ordered destruction groups. Groups are destroyed one
+ * after another in ascending order, instances within the same group may be
+ * destroyed in parallel.
+ *
+ * @since 2.1
+ * @see TypeDestroyOrdering
+ */
+@Beta
+public interface DestroyOrdering {
+
+    /**
+     * Computes the group of the given instance.
+     *
+     * @since 2.1
+     * @param object the instance to be destroyed
+     * @return the group, lower groups are destroyed first
+     */
+    int groupOf(Object object);
+    
+}
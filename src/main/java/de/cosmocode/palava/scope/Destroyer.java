@@ -0,0 +1,42 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Destroys all instances of a detached scope context. Scopes destroy
+ * instances one by one on the current thread, unless an implementation
+ * of this interface is bound, e.g. using the {@link ParallelDestroyModule}.
+ *
+ * @since 2.1
+ */
+@Beta
+public interface Destroyer {
+
+    /**
+     * Destroys the given objects using the given strategy.
+     *
+     * @since 2.1
+     * @param objects the objects to be destroyed
+     * @param strategy the strategy used to destroy every single object
+     * @param errors the collected errors, {@link DestroyErrors#throwIfNecessary()}
+     *        will be called by the caller
+     */
+    void destroy(Iterable<?> objects, DestroyStrategy strategy, DestroyErrors errors);
+    
+}
@@ -18,8 +18,10 @@ package de.cosmocode.palava.scope;
 
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.Scope;
 
@@ -32,14 +34,111 @@ abstract class DestroyingScope implements Scope, DestroyStrategy {
 
     private DestroyStrategy strategy = NoopDestroyStrategy.INSTANCE;
     
+    private DestroyExecutor executor;
+    
+    private Destroyer destroyer;
+    
+    private ScopeListener listener;
+    
+    // whether contexts may contain references to reclaimable or lazy instances
+    private boolean dereferencing;
+    
     @Inject(optional = true)
     void setStrategy(DestroyStrategy strategy) {
         this.strategy = Preconditions.checkNotNull(strategy, "Strategy");
     }
+    
+    @Inject(optional = true)
+    void setExecutor(DestroyExecutor executor) {
+        this.executor = Preconditions.checkNotNull(executor, "Executor");
+    }
+
+    @Inject(optional = true)
+    void setDestroyer(Destroyer destroyer) {
+        this.destroyer = Preconditions.checkNotNull(destroyer, "Destroyer");
+    }
+
+    @Inject(optional = true)
+    void setListeners(Set<ScopeListener> listeners) {
+        setListener(CompoundScopeListener.of(listeners));
+    }
+    
+    /**
+     * Provides the options shared by the {@link ScopingProvider}s of this scope.
+     *
+     * @since 2.1
+     * @return the options or null if this scope has none
+     */
+    ScopingOptions getOptions() {
+        return null;
+    }
+    
+    /**
+     * Sets the listener of this scope.
+     *
+     * @since 2.1
+     * @param listener the listener, null if there is none
+     */
+    void setListener(ScopeListener listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * Enables dereferencing of {@link Reclaimable} and {@link Lazy} instances during destruction.
+     *
+     * @since 2.1
+     */
+    final void setDereferencing() {
+        this.dereferencing = true;
+    }
+    
+    /**
+     * Provides the listener of this scope, if it is enabled.
+     *
+     * @since 2.1
+     * @return the listener or null if there is none or it is disabled
+     */
+    final ScopeListener getListener() {
+        final ScopeListener current = listener;
+        return current != null && current.isEnabled() ? current : null;
+    }
 
     @Override
-    public void destroy(Object object, DestroyErrors errors) {
-        strategy.destroy(object, errors);
+    public void destroy(Object stored, DestroyErrors errors) {
+        final Object object = ScopedReferences.release(stored);
+        final ScopeListener current = getListener();
+        if (current == null) {
+            strategy.destroy(object, errors);
+        } else {
+            // reuses the errors observing a whole context, if any
+            final ObservedDestroyErrors observed = errors instanceof ObservedDestroyErrors
+                ? ObservedDestroyErrors.class.cast(errors).reset() : new ObservedDestroyErrors(errors);
+            final long start = System.nanoTime();
+            try {
+                strategy.destroy(object, observed);
+            } finally {
+                current.onDestroy(this, object, System.nanoTime() - start, observed.getFailure());
+            }
+        }
+    }
+    
+    /**
+     * Checks whether the bound {@link DestroyStrategy} may need to destroy the given instance.
+     * Strategies which are not {@link SelectiveDestroyStrategy selective} apply to every instance.
+     *
+     * @since 2.1
+     * @param instance the instance, may be null
+     * @return true if the given instance may need to be destroyed, false otherwise
+     */
+    final boolean isDestroyable(Object instance) {
+        if (instance == null || strategy == NoopDestroyStrategy.INSTANCE) return false;
+        return !(strategy instanceof SelectiveDestroyStrategy) || 
+            SelectiveDestroyStrategy.class.cast(strategy).appliesTo(instance.getClass());
+    }
+    
+    // the strategy itself or this scope, which notifies the listener and dereferences
+    private DestroyStrategy effectiveStrategy() {
+        return listener == null && !dereferencing ? strategy : this;
     }
     
     /**
@@ -51,9 +150,15 @@ abstract class DestroyingScope implements Scope, DestroyStrategy {
      */
     protected void destroy(Iterable<Object> objects) {
         final DestroyErrors errors = new DefaultDestroyErrors();
+        final DestroyStrategy effective = effectiveStrategy();
         
-        for (Object value : objects) {
-            strategy.destroy(value, errors); 
+        if (destroyer == null) {
+            final DestroyErrors observed = observe(errors);
+            for (Object value : objects) {
+                effective.destroy(value, observed); 
+            }
+        } else {
+            destroyer.destroy(objects, effective, errors);
         }
 
         errors.throwIfNecessary();
@@ -68,13 +173,63 @@ abstract class DestroyingScope implements Scope, DestroyStrategy {
      */
     protected void destroy(Map<? extends Object, ? extends Object> objects) {
         final DestroyErrors errors = new DefaultDestroyErrors();
-        
-        for (Entry<? extends Object, ? extends Object> entry : objects.entrySet()) {
-            strategy.destroy(entry.getKey(), errors);
-            strategy.destroy(entry.getValue(), errors);
+        destroy(objects, errors);
+        errors.throwIfNecessary();
+    }
+    
+    /**
+     * Destroys the given key-value pairs if destruction is required and
+     * collects all failures in the given errors.
+     *
+     * @since 2.1
+     * @param objects the objects to be destroyed
+     * @param errors the errors
+     */
+    final void destroy(Map<? extends Object, ? extends Object> objects, DestroyErrors errors) {
+        // keys are neither observed nor dereferenced
+        final DestroyStrategy effective = effectiveStrategy();
+        if (destroyer != null) {
+            if (effective == strategy) {
+                destroyer.destroy(Iterables.concat(objects.keySet(), objects.values()), strategy, errors);
+            } else {
+                destroyer.destroy(objects.keySet(), strategy, errors);
+                destroyer.destroy(objects.values(), effective, errors);
+            }
+        } else if (objects instanceof SlotScopeContext) {
+            SlotScopeContext.class.cast(objects).destroy(strategy, effective, observe(errors));
+        } else {
+            final DestroyErrors observed = observe(errors);
+            for (Entry<? extends Object, ? extends Object> entry : objects.entrySet()) {
+                strategy.destroy(entry.getKey(), errors);
+                effective.destroy(entry.getValue(), observed);
+            }
         }
+    }
+    
+    /**
+     * Wraps the given errors once per sequential destruction of multiple objects
+     * if the listener is enabled, which avoids wrapping them for every single object.
+     *
+     * @param errors the errors
+     * @return the observed errors or the given errors if there is no enabled listener
+     */
+    private DestroyErrors observe(DestroyErrors errors) {
+        return getListener() == null ? errors : new ObservedDestroyErrors(errors);
+    }
 
-        errors.throwIfNecessary();
+    /**
+     * Executes the given destruction of a detached context using the bound
+     * {@link DestroyExecutor} or directly if there is none.
+     *
+     * @since 2.1
+     * @param destruction the destruction
+     */
+    protected void execute(Runnable destruction) {
+        if (executor == null) {
+            destruction.run();
+        } else {
+            executor.execute(destruction);
+        }
     }
 
     @Override
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Function;
+import com.google.inject.Key;
+
+/**
+ * Maps the {@link Key}s of scoped bindings to the keys used in {@link ScopeContext}s.
+ * Encoders are applied once per binding and the encoded keys are cached, which is why
+ * an encoder must always return equal results for equal keys. A bound encoder is used
+ * by all unit of work scopes of this package, see {@link KeyEncoders} for implementations.
+ *
+ * @since 2.1
+ */
+@Beta
+public interface KeyEncoder extends Function<Key<?>, Object> {
+
+    /**
+     * Encodes the given key.
+     *
+     * @param key the key of a scoped binding
+     * @return the encoded key, never null
+     */
+    @Override
+    Object apply(Key<?> key);
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.inject.Key;
+
+/**
+ * Static factory methods for {@link KeyEncoder}s.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class KeyEncoders {
+
+    private KeyEncoders() {
+
+    }
+
+    /**
+     * Creates an encoder which maps keys to short, interned strings consisting of the
+     * bound type and the binding annotation, if any. Equal keys encoded by the same encoder
+     * share one string instance and the strings are stable across virtual machines, which
+     * makes them suitable for contexts which get serialized. The strings are interned per
+     * encoder and are released together with it.
+     *
+     * @since 2.1
+     * @return a new encoder producing interned strings
+     */
+    public static KeyEncoder compact() {
+        return new CompactKeyEncoder();
+    }
+
+    /**
+     * Creates an encoder which maps every distinct key to the next integer, starting at 0.
+     * The integers are only stable across virtual machines if all keys are encoded
+     * in the same order, e.g. by identical modules.
+     *
+     * @since 2.1
+     * @return a new encoder producing integers
+     */
+    public static KeyEncoder ordinals() {
+        return new OrdinalKeyEncoder();
+    }
+
+    /**
+     * Encodes keys as interned strings.
+     *
+     * @since 2.1
+     */
+    private static final class CompactKeyEncoder implements KeyEncoder {
+
+        private final ConcurrentMap<String, String> interned = Maps.newConcurrentMap();
+
+        @Override
+        public Object apply(Key<?> key) {
+            Preconditions.checkNotNull(key, "Key");
+            final String type = key.getTypeLiteral().toString();
+            final String encoded;
+            if (key.getAnnotation() != null) {
+                encoded = type + key.getAnnotation();
+            } else if (key.getAnnotationType() != null) {
+                encoded = type + "@" + key.getAnnotationType().getName();
+            } else {
+                encoded = type;
+            }
+            final String existing = interned.putIfAbsent(encoded, encoded);
+            return existing == null ? encoded : existing;
+        }
+
+        @Override
+        public String toString() {
+            return "KeyEncoders.compact()";
+        }
+
+    }
+
+    /**
+     * Encodes keys as consecutive integers.
+     *
+     * @since 2.1
+     */
+    private static final class OrdinalKeyEncoder implements KeyEncoder {
+
+        private final Map<Key<?>, Integer> ordinals = Maps.newHashMap();
+
+        @Override
+        public synchronized Object apply(Key<?> key) {
+            Preconditions.checkNotNull(key, "Key");
+            final Integer existing = ordinals.get(key);
+            if (existing == null) {
+                final Integer ordinal = Integer.valueOf(ordinals.size());
+                ordinals.put(key, ordinal);
+                return ordinal;
+            } else {
+                return existing;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "KeyEncoders.ordinals()";
+        }
+
+    }
+
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+
+/**
+ * A lock-free, log-linear histogram of durations in nanoseconds. Every power of two
+ * is split into {@value #SUB_BUCKETS} linear buckets, which bounds the relative error
+ * of {@link Snapshot#getPercentile(double)} to 12.5% using a fixed amount of memory.
+ * Recording never blocks and never allocates.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) << SUB_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records the given duration. Negative durations are recorded as 0.
+     *
+     * @since 2.1
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        final long value = Math.max(0L, nanos);
+        buckets.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int msb = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = msb - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowerBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index >>> SUB_BITS) - 1;
+        final long sub = index & (SUB_BUCKETS - 1);
+        return (SUB_BUCKETS + sub) << shift;
+    }
+
+    static long upperBoundOf(int index) {
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : lowerBoundOf(index + 1) - 1;
+    }
+
+    /**
+     * Takes a snapshot of this histogram. Concurrent recordings may or may not
+     * be part of the snapshot.
+     *
+     * @since 2.1
+     * @return a new snapshot
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKETS];
+        long sum = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            sum += counts[i];
+        }
+        return new Snapshot(counts, sum, total.get(), max.get());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * An immutable snapshot of a {@link LatencyHistogram}.
+     *
+     * @since 2.1
+     */
+    @Beta
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long total;
+
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * Provides the number of recorded durations.
+         *
+         * @since 2.1
+         * @return the number of recorded durations
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Provides the sum of all recorded durations.
+         *
+         * @since 2.1
+         * @return the total duration in nanoseconds
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Provides the mean of all recorded durations.
+         *
+         * @since 2.1
+         * @return the mean duration in nanoseconds, 0 if nothing has been recorded
+         */
+        public double getMean() {
+            return count == 0L ? 0.0 : (double) total / count;
+        }
+
+        /**
+         * Provides the maximum recorded duration.
+         *
+         * @since 2.1
+         * @return the maximum duration in nanoseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Provides an upper bound of the given percentile.
+         *
+         * @since 2.1
+         * @param percentile the percentile, between 0.0 and 100.0
+         * @return the upper bound of the bucket containing the percentile in nanoseconds,
+         *         0 if nothing has been recorded
+         * @throws IllegalArgumentException if percentile is out of range
+         */
+        public long getPercentile(double percentile) {
+            Preconditions.checkArgument(percentile >= 0.0 && percentile <= 100.0,
+                "Percentile %s out of range", percentile);
+            if (count == 0L) {
+                return 0L;
+            }
+            final long rank = Math.max(1L, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, mean=%.0fns, p50=%dns, p99=%dns, max=%dns",
+                count, getMean(), getPercentile(50.0), getPercentile(99.0), max);
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Marks an interface whose scoped instances are created on first use. Scopes based on
+ * {@link ScopingProvider} hand out a proxy implementing the interface, which creates
+ * the scoped instance on its first method invocation. Instances which are injected but
+ * never used are neither created nor destroyed, see {@link LazyProxies#getCounters(com.google.inject.Scope)}.
+ *
+ * <p>
+ *   The annotation has to be present on the type of the binding key, which has to be an
+ *   interface. All proxies handed out during a unit of work share one scoped instance.
+ *   {@link Object#equals(Object)} and {@link Object#hashCode()} of proxies are based on
+ *   identity and do not create the scoped instance.
+ * </p>
+ *
+ * @since 2.1
+ */
+@Beta
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Lazy {
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Key;
+
+/**
+ * Counts the lazy proxies of a single {@link Lazy} binding, see {@link LazyProxies}.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class LazyCounter {
+
+    private final Key<?> key;
+
+    private final AtomicLong proxies = new AtomicLong();
+
+    private final AtomicLong created = new AtomicLong();
+
+    LazyCounter(Key<?> key) {
+        this.key = key;
+    }
+
+    void proxied() {
+        proxies.incrementAndGet();
+    }
+
+    void created() {
+        created.incrementAndGet();
+    }
+
+    public Key<?> getKey() {
+        return key;
+    }
+
+    /**
+     * Provides the number of contexts a proxy has been handed out for.
+     *
+     * @since 2.1
+     * @return the number of proxied scoped instances
+     */
+    public long getProxies() {
+        return proxies.get();
+    }
+
+    /**
+     * Provides the number of proxied scoped instances which have been created
+     * because a proxy has been used.
+     *
+     * @since 2.1
+     * @return the number of created scoped instances
+     */
+    public long getCreated() {
+        return created.get();
+    }
+
+    /**
+     * Provides the number of proxied scoped instances which have not been created,
+     * either because their proxies have never been used or because their unit of
+     * work is still in progress.
+     *
+     * @since 2.1
+     * @return the number of avoided creations
+     */
+    public long getAvoided() {
+        return Math.max(0L, getProxies() - getCreated());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: proxies=%d, created=%d, avoided=%d", key, getProxies(), getCreated(), getAvoided());
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import com.google.inject.OutOfScopeException;
+import com.google.inject.Provider;
+
+/**
+ * Stored in a {@link ScopeContext} instead of a {@link Lazy} instance. Holds the proxy
+ * handed out for the context and creates the scoped instance on the first invocation.
+ * Once the context has been destroyed, invocations fail with an {@link OutOfScopeException}.
+ *
+ * @since 2.1
+ * @param <T> generic target type
+ */
+final class LazyHolder<T> implements InvocationHandler, ScopedReferences.Indirection {
+
+    private final Provider<T> unscoped;
+
+    private final LazyCounter counter;
+
+    private final T proxy;
+
+    // null until created
+    private volatile Object instance;
+
+    // set once the scoped instance has been or is about to be destroyed
+    private volatile boolean closed;
+
+    LazyHolder(Constructor<? extends T> constructor, Provider<T> unscoped, LazyCounter counter) {
+        this.unscoped = unscoped;
+        this.counter = counter;
+        try {
+            this.proxy = constructor.newInstance(this);
+        } catch (InstantiationException e) {
+            throw new IllegalStateException(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    T getProxy() {
+        return proxy;
+    }
+
+    @Override
+    public Object get() {
+        return SlotScopeContext.unmask(instance);
+    }
+
+    /**
+     * Closes this holder, which prevents creating the scoped instance afterwards.
+     *
+     * @return the scoped instance or null if it has not been created
+     */
+    synchronized Object close() {
+        closed = true;
+        return get();
+    }
+
+    private Object instance() {
+        if (closed) {
+            throw new OutOfScopeException("Lazy " + counter.getKey() + " has already been destroyed");
+        }
+        Object current = instance;
+        if (current == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new OutOfScopeException("Lazy " + counter.getKey() + " has already been destroyed");
+                }
+                current = instance;
+                if (current == null) {
+                    current = SlotScopeContext.mask(unscoped.get());
+                    instance = current;
+                    counter.created();
+                }
+            }
+        }
+        return SlotScopeContext.unmask(current);
+    }
+
+    @Override
+    public Object invoke(Object self, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            if ("equals".equals(method.getName())) {
+                return self == args[0];
+            } else if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(self);
+            } else if ("toString".equals(method.getName())) {
+                return toString();
+            }
+        }
+        final Object target = instance();
+        if (target == null) {
+            throw new NullPointerException("Lazy " + counter.getKey() + " has been provided as null");
+        }
+        if (!method.isAccessible()) {
+            method.setAccessible(true);
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final Object current = instance;
+        if (closed) {
+            return "Lazy(" + counter.getKey() + ", destroyed)";
+        } else if (current == null) {
+            return "Lazy(" + counter.getKey() + ", not created)";
+        } else {
+            return "Lazy(" + counter.getKey() + ", " + SlotScopeContext.unmask(current) + ")";
+        }
+    }
+
+}
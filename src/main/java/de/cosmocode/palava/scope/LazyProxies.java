@@ -0,0 +1,53 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Key;
+import com.google.inject.Scope;
+
+/**
+ * Static access to the {@link LazyCounter}s of the {@link Lazy} bindings of a scope.
+ * Counters are held by the scope, i.e. they are never shared between injectors.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class LazyProxies {
+
+    private LazyProxies() {
+
+    }
+
+    /**
+     * Provides the counters of all lazy bindings scoped by the given scope so far.
+     *
+     * @since 2.1
+     * @param scope the scope
+     * @return an immutable copy of all counters by key, empty if the scope does not support lazy bindings
+     * @throws NullPointerException if scope is null
+     */
+    public static ImmutableMap<Key<?>, LazyCounter> getCounters(Scope scope) {
+        Preconditions.checkNotNull(scope, "Scope");
+        final ScopingOptions options = scope instanceof DestroyingScope 
+            ? DestroyingScope.class.cast(scope).getOptions() : null;
+        return options == null ? ImmutableMap.<Key<?>, LazyCounter>of() : options.getCounters();
+    }
+
+}
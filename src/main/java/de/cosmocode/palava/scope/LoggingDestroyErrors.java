@@ -0,0 +1,45 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A reusable {@link DestroyErrors} implementation which logs every error
+ * and never throws. Used for instances nobody else can observe, e.g.
+ * duplicates discarded after a concurrent creation.
+ *
+ * @since 2.1
+ */
+enum LoggingDestroyErrors implements DestroyErrors {
+
+    INSTANCE;
+    
+    private static final Logger LOG = LoggerFactory.getLogger(LoggingDestroyErrors.class);
+
+    @Override
+    public void destroyError(Object object, Exception cause) {
+        LOG.warn("Failed to destroy " + object, cause);
+    }
+    
+    @Override
+    public void throwIfNecessary() {
+        // nothing to do
+    }
+    
+}
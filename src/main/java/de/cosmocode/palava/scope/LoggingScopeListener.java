@@ -0,0 +1,122 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.google.inject.Key;
+import com.google.inject.Scope;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+/**
+ * A {@link ScopeListener} which reports lifecycle events to the logger of this class,
+ * so they can be enabled at runtime by changing its level:
+ * <ul>
+ *   <li>{@code INFO} reports creations and destructions slower than the configured
+ *       {@link ScopeConfig#EVENTS_THRESHOLD threshold}, 10 milliseconds by default</li>
+ *   <li>{@code DEBUG} additionally reports all creations and destructions,
+ *       including the first failure of the destroy strategy</li>
+ *   <li>{@code TRACE} additionally reports begin and end of units of work and all hits</li>
+ * </ul>
+ * Every event carries the scope, the key or the class of the destroyed instance
+ * and the duration in nanoseconds. Scopes don't measure anything while {@code INFO}
+ * is disabled.
+ *
+ * @since 2.1
+ */
+@Beta
+@Singleton
+public final class LoggingScopeListener implements ScopeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoggingScopeListener.class);
+
+    private long threshold = 10;
+
+    private TimeUnit thresholdUnit = TimeUnit.MILLISECONDS;
+
+    private long thresholdNanos = thresholdUnit.toNanos(threshold);
+
+    LoggingScopeListener() {
+
+    }
+
+    @Inject(optional = true)
+    void setThreshold(@Named(ScopeConfig.EVENTS_THRESHOLD) long threshold) {
+        Preconditions.checkArgument(threshold >= 0, "Threshold must not be negative");
+        this.threshold = threshold;
+        this.thresholdNanos = thresholdUnit.toNanos(threshold);
+    }
+
+    @Inject(optional = true)
+    void setThresholdUnit(@Named(ScopeConfig.EVENTS_THRESHOLD_UNIT) TimeUnit thresholdUnit) {
+        this.thresholdUnit = Preconditions.checkNotNull(thresholdUnit, "ThresholdUnit");
+        this.thresholdNanos = thresholdUnit.toNanos(threshold);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return LOG.isInfoEnabled();
+    }
+
+    @Override
+    public void onBegin(Scope scope) {
+        LOG.trace("Began unit of work in {}", scope);
+    }
+
+    @Override
+    public void onEnd(Scope scope) {
+        LOG.trace("Ended unit of work in {}", scope);
+    }
+
+    @Override
+    public void onProvision(Scope scope, Key<?> key, boolean hit, long nanos) {
+        if (hit) {
+            LOG.trace("Found {} in {}", key, scope);
+        } else if (nanos >= thresholdNanos) {
+            LOG.info("Slow creation of {} in {} took {}ns", new Object[] {key, scope, nanos});
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Created {} in {} in {}ns", new Object[] {key, scope, nanos});
+        }
+    }
+
+    @Override
+    public void onDestroy(Scope scope, Object object, long nanos, Exception failure) {
+        if (object == null) {
+            return;
+        } else if (nanos >= thresholdNanos) {
+            LOG.info("Slow destruction of {} in {} took {}ns", new Object[] {object.getClass().getName(), scope, nanos});
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Destroyed {} in {} in {}ns", new Object[] {object.getClass().getName(), scope, nanos});
+        }
+        if (failure != null && LOG.isDebugEnabled()) {
+            LOG.debug("Destruction of " + object.getClass().getName() + " in " + scope + " failed", failure);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(threshold=%d %s)", getClass().getSimpleName(), threshold, thresholdUnit);
+    }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link UnitOfWorkScope} which supports nested units of work inside the current one.
+ * A nested unit of work sees all instances of its parent, but instances created while it
+ * is in progress belong to the nested unit of work and are destroyed when it ends.
+ * This allows to release resources of single steps of a long running unit of work early.
+ *
+ * @since 2.1
+ */
+@Beta
+public interface NestableUnitOfWorkScope extends UnitOfWorkScope {
+
+    /**
+     * Enters a nested unit of work inside the current one.
+     *
+     * @since 2.1
+     * @throws IllegalStateException if there is no unit of work in progress
+     */
+    void beginNested();
+
+    /**
+     * Checks whether a nested unit of work is in progress.
+     *
+     * @since 2.1
+     * @return true if the current unit of work is a nested one, false otherwise
+     */
+    boolean isNested();
+
+    /**
+     * Exits the current nested unit of work and destroys all instances created
+     * inside it. Its parent becomes the current unit of work again.
+     *
+     * @since 2.1
+     * @throws IllegalStateException if there is no nested unit of work in progress
+     */
+    void endNested();
+
+}
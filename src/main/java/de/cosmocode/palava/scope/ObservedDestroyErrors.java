@@ -0,0 +1,63 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+/**
+ * A forwarding {@link DestroyErrors} which remembers the first reported exception,
+ * used to notify {@link ScopeListener}s about failed destructions. One instance is
+ * shared by all objects destroyed sequentially, see {@link #reset()}.
+ *
+ * @since 2.1
+ */
+final class ObservedDestroyErrors implements DestroyErrors {
+
+    private final DestroyErrors errors;
+
+    private Exception failure;
+
+    ObservedDestroyErrors(DestroyErrors errors) {
+        this.errors = errors;
+    }
+
+    @Override
+    public void destroyError(Object object, Exception cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        errors.destroyError(object, cause);
+    }
+
+    @Override
+    public void throwIfNecessary() {
+        errors.throwIfNecessary();
+    }
+
+    /**
+     * Forgets the remembered failure before the next object is destroyed.
+     *
+     * @return this
+     */
+    ObservedDestroyErrors reset() {
+        failure = null;
+        return this;
+    }
+
+    Exception getFailure() {
+        return failure;
+    }
+
+}
@@ -0,0 +1,361 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+
+/**
+ * A {@link Destroyer} which spreads instances over a thread pool. Instances
+ * are destroyed group by group as defined by the bound {@link DestroyOrdering},
+ * if any, regardless of whether they are destroyed in parallel or not. Every parallel
+ * destruction is bounded by its own timeout, starting when a thread picks it up.
+ * Hanging destructions are interrupted and reported as errors, while all remaining
+ * instances and groups are still destroyed. Every thread blocked by a hanging destruction
+ * is compensated by an additional thread until the destruction eventually returns.
+ *
+ * @since 2.1
+ */
+final class ParallelDestroyer implements Destroyer, Disposable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelDestroyer.class);
+    
+    private static final int QUEUED = 0;
+    
+    private static final int RUNNING = 1;
+    
+    private static final int DONE = 2;
+    
+    private static final int ABANDONED = 3;
+    
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    
+    private int threshold = 16;
+    
+    private long timeout = 10;
+    
+    private TimeUnit timeoutUnit = TimeUnit.SECONDS;
+    
+    private DestroyOrdering ordering;
+    
+    private volatile ThreadPoolExecutor executor;
+    
+    // the number of threads blocked by abandoned destructions
+    private int blocked;
+    
+    @Inject(optional = true)
+    void setParallelism(@Named(ScopeConfig.DESTROY_PARALLELISM) int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "Parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+    
+    @Inject(optional = true)
+    void setThreshold(@Named(ScopeConfig.DESTROY_PARALLEL_THRESHOLD) int threshold) {
+        this.threshold = threshold;
+    }
+    
+    @Inject(optional = true)
+    void setTimeout(@Named(ScopeConfig.DESTROY_TIMEOUT) long timeout) {
+        Preconditions.checkArgument(timeout > 0, "Timeout must be positive");
+        this.timeout = timeout;
+    }
+    
+    @Inject(optional = true)
+    void setTimeoutUnit(@Named(ScopeConfig.DESTROY_TIMEOUT_UNIT) TimeUnit timeoutUnit) {
+        this.timeoutUnit = Preconditions.checkNotNull(timeoutUnit, "TimeoutUnit");
+    }
+    
+    @Inject(optional = true)
+    void setOrdering(DestroyOrdering ordering) {
+        this.ordering = Preconditions.checkNotNull(ordering, "Ordering");
+    }
+    
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    LOG.debug("Starting {} destroy thread(s)", parallelism);
+                    executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new DestroyThreadFactory("palava-scope-parallel-destroy"));
+                }
+            }
+        }
+        return executor;
+    }
+    
+    /**
+     * Resizes the pool by the given number of threads blocked by abandoned destructions.
+     *
+     * @param delta the number of newly blocked (positive) or released (negative) threads
+     */
+    private synchronized void compensate(int delta) {
+        blocked += delta;
+        final ThreadPoolExecutor current = executor;
+        // abandoned destructions may return before being compensated
+        final int size = parallelism + Math.max(0, blocked);
+        // the core size must never exceed the maximum size
+        if (delta > 0) {
+            current.setMaximumPoolSize(size);
+            current.setCorePoolSize(size);
+        } else {
+            current.setCorePoolSize(size);
+            current.setMaximumPoolSize(size);
+        }
+    }
+    
+    @Override
+    public void destroy(Iterable<?> objects, DestroyStrategy strategy, DestroyErrors errors) {
+        final List<Object> list = Lists.newArrayList(objects);
+        final Collection<Collection<Object>> groups = group(list).values();
+        
+        if (list.size() < threshold) {
+            for (Collection<Object> group : groups) {
+                for (Object object : group) {
+                    strategy.destroy(object, errors);
+                }
+            }
+        } else {
+            for (Collection<Object> group : groups) {
+                destroy(group, strategy, errors);
+            }
+        }
+    }
+    
+    private SortedMap<Integer, Collection<Object>> group(List<Object> objects) {
+        final SortedMap<Integer, Collection<Object>> groups = Maps.newTreeMap();
+        
+        if (ordering == null) {
+            groups.put(0, objects);
+        } else {
+            for (Object object : objects) {
+                final Integer group = ordering.groupOf(object);
+                Collection<Object> members = groups.get(group);
+                if (members == null) {
+                    members = Lists.newArrayList();
+                    groups.put(group, members);
+                }
+                members.add(object);
+            }
+        }
+        
+        return groups;
+    }
+    
+    /**
+     * Destroys the given group in parallel and waits for all of its destructions,
+     * abandoning every destruction which exceeds the timeout.
+     *
+     * @param group the group
+     * @param strategy the strategy
+     * @param errors the errors of the caller
+     */
+    private void destroy(Collection<Object> group, DestroyStrategy strategy, DestroyErrors errors) {
+        final Set<Destruction> running = Sets.newSetFromMap(new ConcurrentHashMap<Destruction, Boolean>());
+        final List<Destruction> destructions = Lists.newArrayListWithCapacity(group.size());
+        final ThreadPoolExecutor current = getExecutor();
+        
+        for (Object object : group) {
+            final Destruction destruction = new Destruction(object, strategy, running);
+            destruction.future = current.submit(destruction);
+            destructions.add(destruction);
+        }
+        
+        // every destruction is bounded, so waiting can be deferred
+        boolean interrupted = false;
+        
+        try {
+            for (Destruction destruction : destructions) {
+                while (true) {
+                    final long wait = abandonExpired(running, errors);
+                    try {
+                        destruction.future.get(wait, TimeUnit.NANOSECONDS);
+                        destruction.report(errors);
+                        break;
+                    } catch (TimeoutException e) {
+                        continue;
+                    } catch (CancellationException e) {
+                        // abandoned and reported already
+                        break;
+                    } catch (ExecutionException e) {
+                        final Throwable cause = e.getCause();
+                        Throwables.propagateIfInstanceOf(cause, Error.class);
+                        if (destruction.report(errors)) {
+                            errors.destroyError(destruction.object, 
+                                cause instanceof Exception ? Exception.class.cast(cause) : e);
+                        }
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Abandons all running destructions which exceeded the timeout.
+     *
+     * @param running the running destructions
+     * @param errors the errors of the caller
+     * @return the time in nanoseconds until the next running destruction expires
+     */
+    private long abandonExpired(Set<Destruction> running, DestroyErrors errors) {
+        final long timeoutNanos = timeoutUnit.toNanos(timeout);
+        final long now = System.nanoTime();
+        long wait = timeoutNanos;
+        for (Destruction destruction : running) {
+            final long remaining = destruction.started + timeoutNanos - now;
+            if (remaining <= 0) {
+                destruction.abandon(errors);
+            } else {
+                wait = Math.min(wait, remaining);
+            }
+        }
+        return wait;
+    }
+    
+    @Override
+    public void dispose() {
+        final ThreadPoolExecutor current = executor;
+        if (current == null) return;
+        current.shutdown();
+    }
+    
+    /**
+     * The destruction of a single instance. Failures are collected and reported
+     * to the errors of the caller on its own thread, once the destruction completed.
+     *
+     * @since 2.1
+     */
+    private final class Destruction implements Runnable, DestroyErrors {
+        
+        private final Object object;
+        
+        private final DestroyStrategy strategy;
+        
+        private final Set<Destruction> running;
+        
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        
+        private volatile long started;
+        
+        private Future<?> future;
+        
+        private List<Object> failed;
+        
+        private List<Exception> causes;
+        
+        Destruction(Object object, DestroyStrategy strategy, Set<Destruction> running) {
+            this.object = object;
+            this.strategy = strategy;
+            this.running = running;
+        }
+        
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) return;
+            started = System.nanoTime();
+            running.add(this);
+            try {
+                strategy.destroy(object, this);
+            } finally {
+                running.remove(this);
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    LOG.info("Abandoned destruction of {} returned", object);
+                    compensate(-1);
+                }
+            }
+        }
+        
+        @Override
+        public void destroyError(Object failedObject, Exception cause) {
+            if (failed == null) {
+                failed = Lists.newArrayListWithCapacity(1);
+                causes = Lists.newArrayListWithCapacity(1);
+            }
+            failed.add(failedObject);
+            causes.add(cause);
+        }
+        
+        @Override
+        public void throwIfNecessary() {
+            // failures are reported to the caller by report(DestroyErrors)
+        }
+        
+        /**
+         * Reports all failures of this destruction to the given errors, unless it has been abandoned.
+         *
+         * @param errors the errors of the caller
+         * @return true if this destruction completed in time, false if it has been abandoned
+         */
+        boolean report(DestroyErrors errors) {
+            if (state.get() != DONE) return false;
+            if (failed == null) return true;
+            for (int i = 0; i < failed.size(); i++) {
+                errors.destroyError(failed.get(i), causes.get(i));
+            }
+            return true;
+        }
+        
+        /**
+         * Gives up this running destruction after it exceeded the timeout. The thread
+         * blocked by it gets interrupted and compensated by an additional thread.
+         *
+         * @param errors the errors of the caller
+         */
+        void abandon(DestroyErrors errors) {
+            if (!state.compareAndSet(RUNNING, ABANDONED)) return;
+            running.remove(this);
+            LOG.warn("Abandoning destruction of {} after {} {}", new Object[] {
+                object, timeout, timeoutUnit
+            });
+            compensate(1);
+            future.cancel(true);
+            errors.destroyError(object, new TimeoutException("Destruction did not complete in time"));
+        }
+        
+    }
+    
+}
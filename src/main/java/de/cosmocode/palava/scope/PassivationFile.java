@@ -0,0 +1,238 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A memory mapped file holding passivated contexts, see {@link ConversationScope}.
+ * The file is mapped in regions of a fixed size, which are mapped once when the file
+ * grows and shared by all segments they contain. Freed segments are merged with adjacent
+ * free segments and reused by later writes using first fit. Regions which only contain
+ * free segments at the end of the file are dropped and truncated.
+ *
+ * @since 2.1
+ */
+final class PassivationFile implements Closeable {
+
+    private static final int REGION_SIZE = 1 << 20;
+
+    private final File file;
+
+    private final RandomAccessFile access;
+
+    private final FileChannel channel;
+
+    private final int regionSize;
+
+    // guarded by this
+    private final List<MappedByteBuffer> regions = Lists.newArrayList();
+
+    // free segments by offset, guarded by this
+    private final NavigableMap<Long, Long> free = Maps.newTreeMap();
+
+    private long end;
+
+    PassivationFile(File file) throws IOException {
+        this(file, REGION_SIZE);
+    }
+
+    PassivationFile(File file, int regionSize) throws IOException {
+        this.file = Preconditions.checkNotNull(file, "File");
+        Preconditions.checkArgument(regionSize > 0, "Region size must be positive");
+        this.regionSize = regionSize;
+        this.access = new RandomAccessFile(file, "rw");
+        this.channel = access.getChannel();
+        channel.truncate(0L);
+    }
+
+    /**
+     * Writes the given bytes into a free segment or appends them.
+     *
+     * @param bytes the bytes
+     * @return the segment holding the bytes
+     * @throws IOException if mapping the file failed
+     */
+    synchronized Segment write(byte[] bytes) throws IOException {
+        final Segment segment = allocate(bytes.length);
+        try {
+            int done = 0;
+            while (done < bytes.length) {
+                final ByteBuffer buffer = region(segment.offset + done);
+                final int length = Math.min(buffer.remaining(), bytes.length - done);
+                buffer.put(bytes, done, length);
+                done += length;
+            }
+        } catch (IOException e) {
+            free(segment);
+            throw e;
+        }
+        return segment;
+    }
+
+    private Segment allocate(int length) {
+        for (Map.Entry<Long, Long> entry : free.entrySet()) {
+            final long available = entry.getValue();
+            if (available < length) continue;
+            final long offset = entry.getKey();
+            free.remove(offset);
+            if (available > length) {
+                free.put(offset + length, available - length);
+            }
+            return new Segment(offset, length);
+        }
+        final Segment segment = new Segment(end, length);
+        end += length;
+        return segment;
+    }
+
+    /**
+     * Provides a view of the region containing the given position, positioned at it.
+     * Maps all missing regions up to the requested one.
+     *
+     * @param position the position in the file
+     * @return a buffer which is independent from the shared region
+     * @throws IOException if mapping failed
+     */
+    private ByteBuffer region(long position) throws IOException {
+        final int index = (int) (position / regionSize);
+        while (regions.size() <= index) {
+            regions.add(channel.map(MapMode.READ_WRITE, (long) regions.size() * regionSize, regionSize));
+        }
+        final ByteBuffer buffer = regions.get(index).duplicate();
+        buffer.position((int) (position % regionSize));
+        return buffer;
+    }
+
+    /**
+     * Reads the bytes of the given segment.
+     *
+     * @param segment the segment
+     * @return the bytes
+     * @throws IOException if mapping the file failed
+     */
+    synchronized byte[] read(Segment segment) throws IOException {
+        final byte[] bytes = new byte[segment.length];
+        int done = 0;
+        while (done < bytes.length) {
+            final ByteBuffer buffer = region(segment.offset + done);
+            final int length = Math.min(buffer.remaining(), bytes.length - done);
+            buffer.get(bytes, done, length);
+            done += length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Frees the given segment.
+     *
+     * @param segment the segment
+     * @throws IOException if truncating the file failed
+     */
+    synchronized void free(Segment segment) throws IOException {
+        long offset = segment.offset;
+        long length = segment.length;
+
+        final Map.Entry<Long, Long> before = free.floorEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            offset = before.getKey();
+            length += before.getValue();
+            free.remove(offset);
+        }
+        final Long after = free.remove(offset + length);
+        if (after != null) {
+            length += after;
+        }
+
+        if (offset + length == end) {
+            end = offset;
+            truncate();
+        } else {
+            free.put(offset, length);
+        }
+    }
+
+    private void truncate() throws IOException {
+        final int used = (int) ((end + regionSize - 1) / regionSize);
+        if (regions.size() <= used) return;
+        // dropped regions are never accessed again and unmapped once collected
+        while (regions.size() > used) {
+            regions.remove(regions.size() - 1);
+        }
+        channel.truncate((long) used * regionSize);
+    }
+
+    /**
+     * Provides the size of this file, including free segments.
+     *
+     * @return the size in bytes
+     */
+    synchronized long size() {
+        return end;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        regions.clear();
+        try {
+            channel.close();
+            access.close();
+        } finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PassivationFile [" + file + "]";
+    }
+
+    /**
+     * A region of a {@link PassivationFile}.
+     *
+     * @since 2.1
+     */
+    static final class Segment {
+
+        private final long offset;
+
+        private final int length;
+
+        private Segment(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+    }
+
+}
@@ -18,6 +18,10 @@ package de.cosmocode.palava.scope;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.PreDestroy;
 
@@ -25,47 +29,124 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.Beta;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 
 /**
  * A {@link DestroyStrategy} which supports {@link PreDestroy} annotations.
+ * The annotated methods of a type are resolved once, super classes first,
+ * and invoked on every instance of that type afterwards. Types of the
+ * {@code java.*} packages are never inspected. Use the
+ * {@link PreDestroyStrategyModule} to bind this strategy.
  *
  * @since 2.0
  * @author Willi Schoenborn
  */
 @Beta
-final class PreDestroyStrategy implements DestroyStrategy {
+public final class PreDestroyStrategy implements SelectiveDestroyStrategy {
     
     private static final Logger LOG = LoggerFactory.getLogger(PreDestroyStrategy.class);
-
-    @Override
-    public void destroy(Object object, DestroyErrors errors) {
-        destroy(object, object.getClass(), errors);
-    }
     
-    private void destroy(Object object, Class<?> type, DestroyErrors errors) {
-        final Class<?> superType = type.getSuperclass();
-        if (superType == null) return;
+    // resolved methods reference their class, which keeps the weak key reachable until
+    // the soft value has been cleared, so classes can be unloaded after memory pressure
+    private final ConcurrentMap<Class<?>, Method[]> methods = new MapMaker().weakKeys().softValues().makeComputingMap(
+        new Function<Class<?>, Method[]>() {
+            
+            @Override
+            public Method[] apply(Class<?> type) {
+                final List<Method> resolved = Lists.newArrayList();
+                resolve(type, resolved);
+                LOG.trace("Resolved @PreDestroy methods of {}: {}", type, resolved);
+                return resolved.toArray(new Method[resolved.size()]);
+            }
+            
+        }
+    );
+    
+    private static void resolve(Class<?> type, List<Method> resolved) {
+        if (type.getSuperclass() == null) return;
+        if (type.getName().startsWith("java.")) return;
         
         // super classes go first
-        destroy(object, superType, errors);
+        resolve(type.getSuperclass(), resolved);
         
         for (Method method : type.getDeclaredMethods()) {
-            invokeIfPossible(object, method, errors);
+            if (!method.isAnnotationPresent(PreDestroy.class)) {
+                continue;
+            } else if (method.getParameterTypes().length > 0) {
+                LOG.warn("Ignoring @PreDestroy-annotated method {} with parameters", method);
+            } else if (isOverridden(method, resolved)) {
+                LOG.trace("{} overrides an already resolved @PreDestroy-annotated method", method);
+            } else {
+                method.setAccessible(true);
+                resolved.add(method);
+            }
         }
     }
     
-    private void invokeIfPossible(Object object, Method method, DestroyErrors errors) {
-        if (method.isAnnotationPresent(PreDestroy.class)) {
-            try {
-                LOG.trace("Destroying {} using @PreDestroy-annotated method {}", object, method);
-                method.invoke(object);
-            } catch (IllegalArgumentException e) {
-                errors.destroyError(object, e);
-            } catch (IllegalAccessException e) {
-                errors.destroyError(object, e);
-            } catch (InvocationTargetException e) {
-                errors.destroyError(object, e);
-            }
+    /**
+     * Checks whether the given method overrides one of the resolved methods of its
+     * super classes, which will be dispatched to the given method anyway.
+     */
+    private static boolean isOverridden(Method method, List<Method> resolved) {
+        if (isStaticOrPrivate(method)) return false;
+        for (Method candidate : resolved) {
+            if (overrides(method, candidate)) return true;
+        }
+        return false;
+    }
+    
+    private static boolean isStaticOrPrivate(Method method) {
+        return Modifier.isStatic(method.getModifiers()) || Modifier.isPrivate(method.getModifiers());
+    }
+    
+    private static boolean overrides(Method method, Method candidate) {
+        if (isStaticOrPrivate(candidate)) return false;
+        if (!candidate.getName().equals(method.getName())) return false;
+        if (!Arrays.equals(candidate.getParameterTypes(), method.getParameterTypes())) return false;
+        
+        final int modifiers = candidate.getModifiers();
+        if (Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers)) {
+            return true;
+        } else {
+            // package-private methods are only overridden within the same runtime package
+            final Class<?> declaring = candidate.getDeclaringClass();
+            final Class<?> overriding = method.getDeclaringClass();
+            return declaring.getClassLoader() == overriding.getClassLoader() && 
+                packageOf(declaring).equals(packageOf(overriding));
+        }
+    }
+    
+    private static String packageOf(Class<?> type) {
+        final String name = type.getName();
+        final int index = name.lastIndexOf('.');
+        return index == -1 ? "" : name.substring(0, index);
+    }
+
+    @Override
+    public boolean appliesTo(Class<?> type) {
+        return methods.get(type).length > 0;
+    }
+
+    @Override
+    public void destroy(Object object, DestroyErrors errors) {
+        if (object == null) return;
+        for (Method method : methods.get(object.getClass())) {
+            invoke(object, method, errors);
+        }
+    }
+    
+    private void invoke(Object object, Method method, DestroyErrors errors) {
+        try {
+            LOG.trace("Destroying {} using @PreDestroy-annotated method {}", object, method);
+            method.invoke(object);
+        } catch (IllegalArgumentException e) {
+            errors.destroyError(object, e);
+        } catch (IllegalAccessException e) {
+            errors.destroyError(object, e);
+        } catch (InvocationTargetException e) {
+            errors.destroyError(object, e);
         }
     }
 
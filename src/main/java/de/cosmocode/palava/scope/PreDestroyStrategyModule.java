@@ -0,0 +1,42 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import javax.annotation.PreDestroy;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.multibindings.Multibinder;
+
+/**
+ * Adds the {@link PreDestroyStrategy} to the {@link java.util.Set} of {@link DestroyStrategy DestroyStrategies}
+ * bound by the {@link DestroyStrategyModule}, which enables support for {@link PreDestroy}-annotated methods.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class PreDestroyStrategyModule implements Module {
+
+    @Override
+    public void configure(Binder binder) {
+        final Multibinder<DestroyStrategy> multibinder = Multibinder.newSetBinder(binder, DestroyStrategy.class);
+        multibinder.addBinding().to(PreDestroyStrategy.class).in(Singleton.class);
+    }
+
+}
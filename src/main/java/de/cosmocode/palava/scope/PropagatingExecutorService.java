@@ -0,0 +1,108 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An {@link ExecutorService} which propagates the current unit of work of a
+ * {@link ContextUnitOfWorkScope} to the threads of a backing executor. Running
+ * tasks are tracked by a {@link Propagation} of the captured context.
+ *
+ * @since 2.1
+ * @see UnitOfWorkExecutors#propagating(ExecutorService, UnitOfWorkScope)
+ */
+final class PropagatingExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService executor;
+    
+    private final ContextUnitOfWorkScope scope;
+    
+    PropagatingExecutorService(ExecutorService executor, ContextUnitOfWorkScope scope) {
+        this.executor = Preconditions.checkNotNull(executor, "Executor");
+        this.scope = Preconditions.checkNotNull(scope, "Scope");
+    }
+    
+    @Override
+    public void execute(final Runnable command) {
+        Preconditions.checkNotNull(command, "Command");
+        final ScopeContext captured = scope.share();
+        
+        if (captured == null) {
+            executor.execute(command);
+        } else {
+            final Propagation propagation = scope.propagation(captured);
+            executor.execute(new Runnable() {
+                
+                @Override
+                public void run() {
+                    // tasks starting after the unit of work ended run outside of it
+                    final boolean entered = propagation.enter();
+                    final ScopeContext previous = scope.attach(entered ? captured : null);
+                    try {
+                        command.run();
+                    } finally {
+                        try {
+                            scope.restore(previous);
+                        } finally {
+                            if (entered) {
+                                propagation.leave();
+                            }
+                        }
+                    }
+                }
+                
+                @Override
+                public String toString() {
+                    return command + " in " + scope;
+                }
+                
+            });
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+    
+}
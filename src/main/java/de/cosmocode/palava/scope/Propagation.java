@@ -0,0 +1,89 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the tasks a context has been propagated to, see {@link PropagatingExecutorService}.
+ * The thread which propagated the context keeps its ownership: ending the propagation
+ * waits for all running tasks, tasks starting afterwards don't get the context attached.
+ *
+ * @since 2.1
+ */
+final class Propagation {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Propagation.class);
+    
+    private final Thread owner = Thread.currentThread();
+    
+    private int running;
+    
+    private boolean ended;
+    
+    /**
+     * Checks whether the current thread owns the propagated context.
+     *
+     * @return true if the current thread propagated the context, false otherwise
+     */
+    boolean isOwner() {
+        return owner == Thread.currentThread();
+    }
+    
+    /**
+     * Registers a task which is about to use the propagated context.
+     *
+     * @return true if the task may use the context, false if the propagation has been ended
+     */
+    synchronized boolean enter() {
+        if (ended) return false;
+        running++;
+        return true;
+    }
+    
+    /**
+     * Unregisters a task previously registered by {@link #enter()}.
+     */
+    synchronized void leave() {
+        running--;
+        if (running == 0) {
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Ends this propagation and waits for all running tasks. Stops waiting
+     * if the current thread gets interrupted.
+     */
+    synchronized void end() {
+        ended = true;
+        if (running > 0) {
+            LOG.debug("Waiting for {} propagated task(s)", running);
+        }
+        while (running > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted while waiting for {} propagated task(s)", running);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Key;
+
+/**
+ * Provisioning statistics of a single scoped binding, see {@link ScopeStatistics}.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class ProvisionStatistics {
+
+    private final Key<?> key;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final LatencyHistogram creation = new LatencyHistogram();
+
+    ProvisionStatistics(Key<?> key) {
+        this.key = key;
+    }
+
+    void record(boolean hit, long nanos) {
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            creation.record(nanos);
+        }
+    }
+
+    public Key<?> getKey() {
+        return key;
+    }
+
+    /**
+     * Provides the number of provisions which found an existing instance.
+     *
+     * @since 2.1
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Provides the number of provisions which created a new instance.
+     *
+     * @since 2.1
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Provides the durations of the unscoped provider when creating new instances.
+     *
+     * @since 2.1
+     * @return a snapshot of the creation durations
+     */
+    public LatencyHistogram.Snapshot getCreation() {
+        return creation.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: hits=%d, misses=%d, creation=[%s]", key, getHits(), getMisses(), creation);
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Marks a type whose scoped instances can be re-created at any time. Scopes based on
+ * {@link ScopingProvider} hold such instances through a soft or weak reference, which
+ * allows the garbage collector to reclaim them under memory pressure, even during a
+ * long running unit of work. Reclaimed instances are transparently re-created on the
+ * next access, instances still alive at the end of the scope are destroyed as usual.
+ *
+ * <p>
+ *   The annotation has to be present on the type of the binding key, e.g.
+ *   the interface, not on its implementation.
+ * </p>
+ *
+ * @since 2.1
+ */
+@Beta
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Reclaimable {
+
+    /**
+     * The strength of the reference holding scoped instances.
+     *
+     * @since 2.1
+     */
+    Strength value() default Strength.SOFT;
+
+    /**
+     * Reference strengths of {@link Reclaimable} instances.
+     *
+     * @since 2.1
+     */
+    enum Strength {
+
+        /**
+         * Instances are reclaimed when memory runs low, see {@link java.lang.ref.SoftReference}.
+         */
+        SOFT,
+
+        /**
+         * Instances are reclaimed as soon as nothing else refers to them,
+         * see {@link java.lang.ref.WeakReference}.
+         */
+        WEAK;
+
+    }
+
+}
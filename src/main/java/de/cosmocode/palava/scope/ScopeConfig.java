@@ -0,0 +1,158 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Static constant holder class for scope config key names.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class ScopeConfig {
+
+    public static final String PREFIX = "scope.";
+
+    /**
+     * Enables slot indexed {@link ScopeContext}s, see {@link SlotScopeContext}.
+     */
+    public static final String INDEXED = PREFIX + "indexed";
+
+    /**
+     * Enables single flight creation, i.e. scoped instances are created exactly
+     * once per context, even if the context is accessed concurrently.
+     */
+    public static final String SINGLE_FLIGHT = PREFIX + "singleFlight";
+
+    /**
+     * Enables recycling of contexts, i.e. every thread reuses one {@link ScopeContext}
+     * for all of its units of work, see {@link ThreadLocalUnitOfWorkScope}.
+     */
+    public static final String RECYCLING = PREFIX + "recycling";
+
+    /**
+     * The maximum number of pending destructions of the {@link ThreadPoolDestroyExecutor}.
+     */
+    public static final String DESTROY_QUEUE_SIZE = PREFIX + "destroy.queueSize";
+
+    /**
+     * The number of threads of the {@link ThreadPoolDestroyExecutor}.
+     */
+    public static final String DESTROY_THREADS = PREFIX + "destroy.threads";
+
+    /**
+     * The {@link DestroyBackpressure} policy of the {@link ThreadPoolDestroyExecutor}.
+     */
+    public static final String DESTROY_BACKPRESSURE = PREFIX + "destroy.backpressure";
+
+    /**
+     * The maximum time to wait for pending destructions on shutdown.
+     */
+    public static final String DESTROY_SHUTDOWN_TIMEOUT = PREFIX + "destroy.shutdownTimeout";
+
+    /**
+     * The unit of {@link #DESTROY_SHUTDOWN_TIMEOUT}.
+     */
+    public static final String DESTROY_SHUTDOWN_TIMEOUT_UNIT = PREFIX + "destroy.shutdownTimeoutUnit";
+
+    /**
+     * The number of threads of the {@link ParallelDestroyer}.
+     */
+    public static final String DESTROY_PARALLELISM = PREFIX + "destroy.parallelism";
+
+    /**
+     * The minimum number of instances the {@link ParallelDestroyer} destroys in parallel.
+     */
+    public static final String DESTROY_PARALLEL_THRESHOLD = PREFIX + "destroy.parallelThreshold";
+
+    /**
+     * The maximum time the {@link ParallelDestroyer} waits for the destruction of a single instance.
+     */
+    public static final String DESTROY_TIMEOUT = PREFIX + "destroy.timeout";
+
+    /**
+     * The unit of {@link #DESTROY_TIMEOUT}.
+     */
+    public static final String DESTROY_TIMEOUT_UNIT = PREFIX + "destroy.timeoutUnit";
+
+    /**
+     * The maximum number of instances held by the {@link CacheScope}, unbounded by default.
+     */
+    public static final String CACHE_MAXIMUM_SIZE = PREFIX + "cache.maximumSize";
+
+    /**
+     * The time to live of instances held by the {@link CacheScope}, unlimited by default.
+     */
+    public static final String CACHE_EXPIRE_AFTER_WRITE = PREFIX + "cache.expireAfterWrite";
+
+    /**
+     * The idle timeout of instances held by the {@link CacheScope}, unlimited by default.
+     */
+    public static final String CACHE_EXPIRE_AFTER_ACCESS = PREFIX + "cache.expireAfterAccess";
+
+    /**
+     * The unit of {@link #CACHE_EXPIRE_AFTER_WRITE} and {@link #CACHE_EXPIRE_AFTER_ACCESS}.
+     */
+    public static final String CACHE_EXPIRATION_UNIT = PREFIX + "cache.expirationUnit";
+
+    /**
+     * The maximum number of tenant contexts held by the {@link TenantScope}.
+     */
+    public static final String TENANT_MAXIMUM_SIZE = PREFIX + "tenant.maximumSize";
+
+    /**
+     * The idle time after which conversations of the {@link ConversationScope} get passivated.
+     */
+    public static final String CONVERSATION_IDLE_THRESHOLD = PREFIX + "conversation.idleThreshold";
+
+    /**
+     * The unit of {@link #CONVERSATION_IDLE_THRESHOLD}.
+     */
+    public static final String CONVERSATION_IDLE_THRESHOLD_UNIT = PREFIX + "conversation.idleThresholdUnit";
+
+    /**
+     * The idle time after which abandoned conversations of the {@link ConversationScope} get ended.
+     */
+    public static final String CONVERSATION_TIMEOUT = PREFIX + "conversation.timeout";
+
+    /**
+     * The unit of {@link #CONVERSATION_TIMEOUT}.
+     */
+    public static final String CONVERSATION_TIMEOUT_UNIT = PREFIX + "conversation.timeoutUnit";
+
+    /**
+     * The file passivated conversations of the {@link ConversationScope} are written to,
+     * a temporary file by default.
+     */
+    public static final String CONVERSATION_FILE = PREFIX + "conversation.file";
+
+    /**
+     * The duration above which the {@link LoggingScopeListener} reports creations and destructions as slow.
+     */
+    public static final String EVENTS_THRESHOLD = PREFIX + "events.threshold";
+
+    /**
+     * The unit of {@link #EVENTS_THRESHOLD}.
+     */
+    public static final String EVENTS_THRESHOLD_UNIT = PREFIX + "events.thresholdUnit";
+
+    private ScopeConfig() {
+
+    }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A factory for the {@link ScopeContext}s of the unit of work scopes of this package.
+ * If a factory is bound, it replaces the default {@link java.util.concurrent.ConcurrentMap}
+ * based contexts and {@link ScopeConfig#INDEXED} has no effect.
+ *
+ * @since 2.1
+ */
+@Beta
+public interface ScopeContextFactory {
+
+    /**
+     * Creates a new and empty context for a unit of work.
+     *
+     * @since 2.1
+     * @return a new context
+     */
+    ScopeContext create();
+
+    /**
+     * Prepares the given context, created by this factory, to be accessed by other
+     * threads, e.g. when a unit of work is propagated using {@link UnitOfWorkExecutors}.
+     * The returned context replaces the given one for the rest of the unit of work.
+     *
+     * @since 2.1
+     * @param context the context of the current unit of work
+     * @return a thread-safe view of the given context or the context itself if it is already thread-safe
+     */
+    ScopeContext share(ScopeContext context);
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+/**
+ * Learns the typical size of the contexts of one scope, which allows to pre-size
+ * new contexts. The expected size follows growing contexts immediately and
+ * decays slowly afterwards, so occasional large units of work do not need to
+ * resize their contexts, while a permanent shrink is picked up eventually.
+ * Updates are not atomic, losing a concurrent update is acceptable.
+ *
+ * @since 2.1
+ */
+final class ScopeContextSizes {
+
+    // every recorded smaller size closes 1/DECAY of the gap
+    private static final int DECAY = 16;
+
+    private volatile int expected;
+
+    ScopeContextSizes(int initial) {
+        this.expected = initial;
+    }
+
+    /**
+     * Provides the size new contexts should be created with.
+     *
+     * @return the expected size
+     */
+    int expected() {
+        return expected;
+    }
+
+    /**
+     * Records the final size of a context.
+     *
+     * @param size the size of a context at the end of its unit of work
+     */
+    void record(int size) {
+        final int current = expected;
+        if (size > current) {
+            expected = size;
+        } else if (size < current) {
+            expected = current - Math.max(1, (current - size) / DECAY);
+        }
+    }
+
+}
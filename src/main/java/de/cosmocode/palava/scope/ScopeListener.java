@@ -0,0 +1,83 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Key;
+import com.google.inject.Scope;
+
+/**
+ * Observes the lifecycle of the scopes of this package. Listeners are bound using
+ * a {@link com.google.inject.multibindings.Multibinder}, see {@link ScopeListenerModule}.
+ * Scopes without any bound listener skip all events, including the time measurement.
+ * Events are delivered synchronously by the thread causing them, so implementations
+ * should be fast and thread-safe. Exceptions thrown by listeners are logged and ignored.
+ * Extend {@link AbstractScopeListener} to observe only some of the events.
+ *
+ * @since 2.1
+ */
+@Beta
+public interface ScopeListener {
+
+    /**
+     * Checks whether this listener currently observes events. Scopes neither measure
+     * nor report events while this returns false, so it should be cheap to call.
+     *
+     * @since 2.1
+     * @return true if this listener is enabled, false otherwise
+     */
+    boolean isEnabled();
+
+    /**
+     * Called after a unit of work began.
+     *
+     * @since 2.1
+     * @param scope the scope
+     */
+    void onBegin(Scope scope);
+
+    /**
+     * Called after a unit of work ended. Asynchronous destruction may still be in progress.
+     *
+     * @since 2.1
+     * @param scope the scope
+     */
+    void onEnd(Scope scope);
+
+    /**
+     * Called after a scoped instance was provided.
+     *
+     * @since 2.1
+     * @param scope the scope
+     * @param key the key of the scoped binding
+     * @param hit true if an existing instance was found, false if a new one has been created
+     * @param nanos the time it took to create the instance, 0 on hits
+     */
+    void onProvision(Scope scope, Key<?> key, boolean hit, long nanos);
+
+    /**
+     * Called after an object has been handed to the bound {@link DestroyStrategy}.
+     *
+     * @since 2.1
+     * @param scope the scope
+     * @param object the destroyed object, may be null
+     * @param nanos the time it took to destroy the object
+     * @param failure the first exception reported by the strategy, null if the destruction succeeded
+     */
+    void onDestroy(Scope scope, Object object, long nanos, Exception failure);
+
+}
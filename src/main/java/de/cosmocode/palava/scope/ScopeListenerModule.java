@@ -0,0 +1,39 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.multibindings.Multibinder;
+
+/**
+ * Declares the {@link java.util.Set} of {@link ScopeListener}s, which is empty
+ * unless listeners are added using {@link Multibinder#newSetBinder(Binder, Class)}.
+ * Installing this module is optional, adding a listener declares the set as well.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class ScopeListenerModule implements Module {
+
+    @Override
+    public void configure(Binder binder) {
+        Multibinder.newSetBinder(binder, ScopeListener.class);
+    }
+
+}
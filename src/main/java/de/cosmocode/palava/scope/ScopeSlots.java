@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * Assigns dense integer slots to (encoded) keys of a scope. Slots are
+ * usually assigned once during injector creation, when
+ * {@link com.google.inject.Scope#scope(com.google.inject.Key, com.google.inject.Provider)}
+ * is called, and are used by {@link SlotScopeContext} to access scoped
+ * instances without hashing the key.
+ *
+ * @since 2.1
+ */
+final class ScopeSlots {
+
+    private final ConcurrentMap<Object, Integer> slots = Maps.newConcurrentMap();
+
+    private final List<Object> keys = new CopyOnWriteArrayList<Object>();
+
+    /**
+     * Returns the slot of the given key, assigning the next free one if necessary.
+     *
+     * @param key the key
+     * @return the slot of the given key
+     * @throws NullPointerException if key is null
+     */
+    int slotOf(Object key) {
+        Preconditions.checkNotNull(key, "Key");
+        final Integer slot = slots.get(key);
+        if (slot == null) {
+            synchronized (this) {
+                final Integer existing = slots.get(key);
+                if (existing == null) {
+                    final int next = keys.size();
+                    keys.add(key);
+                    slots.put(key, next);
+                    return next;
+                } else {
+                    return existing.intValue();
+                }
+            }
+        } else {
+            return slot.intValue();
+        }
+    }
+
+    /**
+     * Returns the slot of the given key without assigning a new one.
+     *
+     * @param key the key
+     * @return the slot of the given key or -1 if there is none
+     */
+    int indexOf(Object key) {
+        if (key == null) return -1;
+        final Integer slot = slots.get(key);
+        return slot == null ? -1 : slot.intValue();
+    }
+
+    /**
+     * Returns the key assigned to the given slot.
+     *
+     * @param slot the slot
+     * @return the key of the given slot
+     * @throws IndexOutOfBoundsException if the slot has not been assigned yet
+     */
+    Object keyAt(int slot) {
+        return keys.get(slot);
+    }
+
+    /**
+     * Returns the number of assigned slots.
+     *
+     * @return the number of slots
+     */
+    int size() {
+        return keys.size();
+    }
+
+}
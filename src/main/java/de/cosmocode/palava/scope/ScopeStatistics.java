@@ -0,0 +1,135 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
+import com.google.inject.Key;
+import com.google.inject.Scope;
+import com.google.inject.Singleton;
+
+/**
+ * A {@link ScopeListener} which collects per {@link Key} provisioning statistics
+ * and per {@link Scope} unit of work statistics. Install the {@link ScopeStatisticsModule}
+ * and inject this class to access the collected statistics at runtime, e.g. to find
+ * the scoped bindings which dominate request latency or which are created but never reused.
+ *
+ * @since 2.1
+ */
+@Beta
+@Singleton
+public final class ScopeStatistics implements ScopeListener {
+
+    private final ConcurrentMap<Key<?>, ProvisionStatistics> provisions = new MapMaker().makeComputingMap(
+        new Function<Key<?>, ProvisionStatistics>() {
+
+            @Override
+            public ProvisionStatistics apply(Key<?> key) {
+                return new ProvisionStatistics(key);
+            }
+
+        }
+    );
+
+    private final ConcurrentMap<Scope, UnitStatistics> units = new MapMaker().makeComputingMap(
+        new Function<Scope, UnitStatistics>() {
+
+            @Override
+            public UnitStatistics apply(Scope scope) {
+                return new UnitStatistics(scope);
+            }
+
+        }
+    );
+
+    ScopeStatistics() {
+
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void onBegin(Scope scope) {
+        units.get(scope).begin();
+    }
+
+    @Override
+    public void onEnd(Scope scope) {
+        units.get(scope).end();
+    }
+
+    @Override
+    public void onProvision(Scope scope, Key<?> key, boolean hit, long nanos) {
+        provisions.get(key).record(hit, nanos);
+    }
+
+    @Override
+    public void onDestroy(Scope scope, Object object, long nanos, Exception failure) {
+        units.get(scope).destroyed(nanos);
+    }
+
+    /**
+     * Provides the provisioning statistics of all scoped bindings used so far.
+     *
+     * @since 2.1
+     * @return an immutable copy of the current statistics by key
+     */
+    public ImmutableMap<Key<?>, ProvisionStatistics> getProvisions() {
+        return ImmutableMap.copyOf(provisions);
+    }
+
+    /**
+     * Provides the unit of work statistics of all scopes used so far.
+     *
+     * @since 2.1
+     * @return an immutable copy of the current statistics by scope
+     */
+    public ImmutableMap<Scope, UnitStatistics> getUnits() {
+        return ImmutableMap.copyOf(units);
+    }
+
+    /**
+     * Provides all keys whose instances have been created but never been reused
+     * inside the same unit of work. Scoping these bindings has no benefit.
+     *
+     * @since 2.1
+     * @return an immutable set of keys
+     */
+    public ImmutableSet<Key<?>> getUnused() {
+        final ImmutableSet.Builder<Key<?>> builder = ImmutableSet.builder();
+        for (ProvisionStatistics statistics : provisions.values()) {
+            if (statistics.getHits() == 0L && statistics.getMisses() > 0L) {
+                builder.add(statistics.getKey());
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ScopeStatistics %s %s", units.values(), provisions.values());
+    }
+
+}
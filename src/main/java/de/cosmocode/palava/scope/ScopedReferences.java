@@ -0,0 +1,118 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Static utility methods for the indirections holding {@link Reclaimable} and {@link Lazy}
+ * instances in {@link ScopeContext}s. Only {@link Indirection}s are dereferenced, other
+ * values are passed through unmodified.
+ *
+ * @since 2.1
+ */
+final class ScopedReferences {
+
+    private ScopedReferences() {
+
+    }
+
+    /**
+     * Wraps the given value into a reference of the given strength.
+     *
+     * @param value the value, may be null
+     * @param strength the reference strength
+     * @return a new reference or null if value is null
+     */
+    static Object wrap(Object value, Reclaimable.Strength strength) {
+        Preconditions.checkNotNull(strength, "Strength");
+        if (value == null) {
+            return null;
+        } else if (strength == Reclaimable.Strength.WEAK) {
+            return new WeakScopedReference(value);
+        } else {
+            return new SoftScopedReference(value);
+        }
+    }
+
+    /**
+     * Dereferences the given stored value.
+     *
+     * @param stored the value stored in a context
+     * @return the referent if stored is an indirection, stored otherwise
+     */
+    static Object dereference(Object stored) {
+        return stored instanceof Indirection ? Indirection.class.cast(stored).get() : stored;
+    }
+
+    /**
+     * Dereferences the given stored value, which is about to be destroyed. Proxies
+     * of {@link Lazy} instances can't create their instance afterwards.
+     *
+     * @param stored the value stored in a context
+     * @return the referent if stored is an indirection, stored otherwise
+     */
+    static Object release(Object stored) {
+        return stored instanceof LazyHolder<?> ? LazyHolder.class.cast(stored).close() : dereference(stored);
+    }
+
+    /**
+     * An indirection stored in a context instead of the scoped instance itself.
+     *
+     * @since 2.1
+     */
+    interface Indirection {
+
+        /**
+         * Provides the scoped instance.
+         *
+         * @return the scoped instance or null if it has been reclaimed or not been created yet
+         */
+        Object get();
+
+    }
+
+    /**
+     * A soft scoped reference.
+     *
+     * @since 2.1
+     */
+    private static final class SoftScopedReference extends SoftReference<Object> implements Indirection {
+
+        SoftScopedReference(Object referent) {
+            super(referent);
+        }
+
+    }
+
+    /**
+     * A weak scoped reference.
+     *
+     * @since 2.1
+     */
+    private static final class WeakScopedReference extends WeakReference<Object> implements Indirection {
+
+        WeakScopedReference(Object referent) {
+            super(referent);
+        }
+
+    }
+
+}
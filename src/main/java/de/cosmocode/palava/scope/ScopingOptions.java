@@ -0,0 +1,129 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.inject.Key;
+
+/**
+ * Per scope options shared by all {@link ScopingProvider}s of that scope.
+ * Providers are created during injector creation, usually before the owning
+ * scope has been injected, which is why they consult these options on every
+ * access instead of copying them once. The {@link KeyEncoder} is the exception, it
+ * is applied once per provider on its first access and can't be changed afterwards.
+ *
+ * @since 2.1
+ */
+final class ScopingOptions {
+
+    private final ScopeSlots slots = new ScopeSlots();
+
+    private volatile boolean singleFlight;
+    
+    private volatile ScopeListener listener;
+    
+    // creations currently in progress, only used in single flight mode
+    private final ConcurrentMap<ScopingProvider.Flight, ScopingProvider.Flight> flights = Maps.newConcurrentMap();
+    
+    private final ConcurrentMap<Key<?>, LazyCounter> counters = Maps.newConcurrentMap();
+    
+    // the encoder, fixed once the first key has been encoded, guarded by this
+    private KeyEncoder encoder;
+    
+    private boolean encoded;
+
+    ScopeSlots getSlots() {
+        return slots;
+    }
+
+    boolean isSingleFlight() {
+        return singleFlight;
+    }
+
+    void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+    
+    ConcurrentMap<ScopingProvider.Flight, ScopingProvider.Flight> getFlights() {
+        return flights;
+    }
+    
+    /**
+     * Provides the counter of the given {@link Lazy} key, creating it if necessary.
+     *
+     * @param key the key
+     * @return the counter of the given key
+     */
+    LazyCounter counterOf(Key<?> key) {
+        final LazyCounter counter = counters.get(key);
+        if (counter == null) {
+            final LazyCounter created = new LazyCounter(key);
+            final LazyCounter existing = counters.putIfAbsent(key, created);
+            return existing == null ? created : existing;
+        } else {
+            return counter;
+        }
+    }
+    
+    ImmutableMap<Key<?>, LazyCounter> getCounters() {
+        return ImmutableMap.copyOf(counters);
+    }
+    
+    /**
+     * Provides the listener, if it is enabled.
+     *
+     * @return the listener or null if there is none or it is disabled
+     */
+    ScopeListener getListener() {
+        final ScopeListener current = listener;
+        return current != null && current.isEnabled() ? current : null;
+    }
+    
+    void setListener(ScopeListener listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * Sets the encoder used for all keys which have not been encoded yet.
+     *
+     * @param encoder the encoder
+     * @throws NullPointerException if encoder is null
+     * @throws IllegalStateException if a key has already been encoded
+     */
+    synchronized void setEncoder(KeyEncoder encoder) {
+        Preconditions.checkNotNull(encoder, "Encoder");
+        Preconditions.checkState(!encoded, "Keys have already been encoded using %s", this.encoder);
+        this.encoder = encoder;
+    }
+    
+    /**
+     * Encodes the given key using the current encoder, which is fixed from now on.
+     *
+     * @param key the key
+     * @return the encoded key
+     * @throws NullPointerException if the encoder returns null
+     */
+    synchronized Object encode(Key<?> key) {
+        encoded = true;
+        return encoder == null ? key : Preconditions.checkNotNull(encoder.apply(key), "Encoded %s", key);
+    }
+
+}
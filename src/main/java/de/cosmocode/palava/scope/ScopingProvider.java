@@ -16,6 +16,11 @@
 
 package de.cosmocode.palava.scope;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,17 +44,119 @@ public final class ScopingProvider<T> implements Provider<T> {
     private final SupplyingScope scope;
     private final Key<T> key;
     private final Provider<T> unscoped;
+    private final ScopingOptions options;
+    private final ScopeSlots slots;
+    
+    // the strength of references holding instances, null for strong references
+    private final Reclaimable.Strength strength;
+    
+    // the constructor of lazy proxies, null unless the key is lazy
+    private final Constructor<? extends T> lazy;
+    
+    private final LazyCounter counter;
+    
+    // the encoder of this provider, null to use the encoder of the options, guarded by this
+    private Function<? super Key<T>, Object> encoder;
     
-    private Function<? super Key<T>, Object> encoder = new NoopKeyEncoder<T>();
+    // the encoded key and its slot, assigned once on first access
+    private volatile Encoding encoding;
 
     public ScopingProvider(SupplyingScope scope, Key<T> key, Provider<T> unscoped) {
         this.scope = Preconditions.checkNotNull(scope, "Scope");
         this.key = Preconditions.checkNotNull(key, "Key");
         this.unscoped =  Preconditions.checkNotNull(unscoped, "Unscoped");
+        this.options = null;
+        this.slots = null;
+        this.lazy = lazyOf(scope, key);
+        this.counter = lazy == null ? null : new LazyCounter(key);
+        this.strength = lazy == null ? strengthOf(scope, key) : null;
+    }
+    
+    /**
+     * Creates a provider which uses the given options, e.g. it assigns
+     * a slot and uses it to access {@link SlotScopeContext}s.
+     *
+     * @since 2.1
+     * @param scope the scope
+     * @param key the key
+     * @param unscoped the unscoped provider
+     * @param options the options of the scope
+     */
+    ScopingProvider(SupplyingScope scope, Key<T> key, Provider<T> unscoped, ScopingOptions options) {
+        this.scope = Preconditions.checkNotNull(scope, "Scope");
+        this.key = Preconditions.checkNotNull(key, "Key");
+        this.unscoped =  Preconditions.checkNotNull(unscoped, "Unscoped");
+        this.options = Preconditions.checkNotNull(options, "Options");
+        this.slots = options.getSlots();
+        this.lazy = lazyOf(scope, key);
+        this.counter = lazy == null ? null : options.counterOf(key);
+        this.strength = lazy == null ? strengthOf(scope, key) : null;
+    }
+    
+    private static Reclaimable.Strength strengthOf(SupplyingScope scope, Key<?> key) {
+        final Reclaimable reclaimable = key.getTypeLiteral().getRawType().getAnnotation(Reclaimable.class);
+        if (reclaimable == null) {
+            return null;
+        } else {
+            if (scope instanceof DestroyingScope) {
+                DestroyingScope.class.cast(scope).setDereferencing();
+            }
+            return reclaimable.value();
+        }
+    }
+    
+    private static <T> Constructor<? extends T> lazyOf(SupplyingScope scope, Key<T> key) {
+        final Class<? super T> type = key.getTypeLiteral().getRawType();
+        if (type.isAnnotationPresent(Lazy.class)) {
+            Preconditions.checkArgument(type.isInterface(), "%s is @Lazy but not an interface", type);
+            if (scope instanceof DestroyingScope) {
+                DestroyingScope.class.cast(scope).setDereferencing();
+            }
+            @SuppressWarnings("unchecked")
+            final Class<? extends T> proxyClass = (Class<? extends T>) Proxy.getProxyClass(
+                type.getClassLoader(), type);
+            try {
+                return proxyClass.getConstructor(InvocationHandler.class);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            return null;
+        }
+    }
+    
+    /**
+     * Sets the encoder which maps the key of this provider to the key used in
+     * {@link ScopeContext}s. The encoder is applied once, on first access, see {@link KeyEncoder}.
+     *
+     * @param encoder the new encoder
+     * @throws NullPointerException if encoder is null
+     * @throws IllegalStateException if the key has already been encoded
+     */
+    public synchronized void setEncoder(Function<? super Key<T>, Object> encoder) {
+        Preconditions.checkNotNull(encoder, "Encoder");
+        Preconditions.checkState(encoding == null, "%s has already been encoded", key);
+        this.encoder = encoder;
     }
     
-    public void setEncoder(Function<? super Key<T>, Object> encoder) {
-        this.encoder = Preconditions.checkNotNull(encoder, "Encoder");
+    private Encoding encoding() {
+        final Encoding current = encoding;
+        return current == null ? encode() : current;
+    }
+    
+    private synchronized Encoding encode() {
+        if (encoding == null) {
+            final Object encoded;
+            if (encoder != null) {
+                encoded = Preconditions.checkNotNull(encoder.apply(key), "Encoded %s", key);
+            } else if (options != null) {
+                encoded = options.encode(key);
+            } else {
+                encoded = key;
+            }
+            encoding = new Encoding(encoded, slots == null ? -1 : slots.slotOf(encoded));
+        }
+        return encoding;
     }
     
     private void checkInScope(ScopeContext context) {
@@ -66,26 +173,271 @@ public final class ScopingProvider<T> implements Provider<T> {
         
         checkInScope(context);
         
-        final Object encoded = encoder.apply(key);
+        if (lazy != null) {
+            return proxy(context);
+        }
+        
+        final Object stored = lookup(context);
+        final ScopeListener listener = options == null ? null : options.getListener();
         
-        @SuppressWarnings("unchecked")
-        final T scoped = (T) context.get(encoded);
+        // the referent is kept strongly reachable from here on
+        final Object masked = strength == null ? stored : ScopedReferences.dereference(stored);
         
         // is there a scoped version?
-        if (scoped == null && !context.containsKey(encoded)) {
-            final T value = unscoped.get();
-            context.putIfAbsent(encoded, value);
+        if (masked == null) {
+            final long start = listener == null ? 0L : System.nanoTime();
+            final T value = options != null && options.isSingleFlight() ? createOnce(context) : create(context);
             LOG.trace("No scoped version for {} found, created {}", key, value);
+            if (listener != null) {
+                listener.onProvision(scope, key, false, System.nanoTime() - start);
+            }
             return value;
         } else {
+            final T scoped = unmask(masked);
             LOG.trace("Found scoped version for {}: {}", key, scoped);
+            if (listener != null) {
+                listener.onProvision(scope, key, true, 0L);
+            }
             return scoped;
         }
     }
+    
+    /**
+     * Provides the lazy proxy of the given context, creating it if necessary.
+     *
+     * @param context the current context
+     * @return the proxy
+     */
+    private T proxy(ScopeContext context) {
+        final Object stored = lookup(context);
+        if (stored instanceof LazyHolder<?>) {
+            return this.<LazyHolder<T>>unmask(stored).getProxy();
+        }
+        
+        final LazyHolder<T> holder = new LazyHolder<T>(lazy, unscoped, counter);
+        final Object existing = store(context, holder);
+        if (existing == null) {
+            counter.proxied();
+            LOG.trace("Created lazy proxy for {}", key);
+            return holder.getProxy();
+        } else if (existing instanceof LazyHolder<?>) {
+            return this.<LazyHolder<T>>unmask(existing).getProxy();
+        } else {
+            return unmask(existing);
+        }
+    }
+    
+    private boolean isIndexed(ScopeContext context) {
+        return context instanceof SlotScopeContext && SlotScopeContext.class.cast(context).isIndexedBy(slots);
+    }
+    
+    /**
+     * Looks up the scoped version in the given context.
+     * 
+     * @param context the current context
+     * @return the masked scoped version or null if there is none
+     */
+    private Object lookup(ScopeContext context) {
+        if (isIndexed(context)) {
+            return SlotScopeContext.class.cast(context).lookup(encoding().slot);
+        } else {
+            final Object encoded = encoding().key;
+            final Object scoped = context.get(encoded);
+            if (scoped == null && context.containsKey(encoded)) {
+                // the instance may have been stored concurrently in the meantime
+                final Object stored = context.get(encoded);
+                return stored == null ? SlotScopeContext.mask(null) : stored;
+            } else {
+                return scoped;
+            }
+        }
+    }
+    
+    /**
+     * Creates a new instance and stores it in the given context. If another thread
+     * stored an instance first, the new one will be destroyed and the existing
+     * one will be returned.
+     * 
+     * @param context the current context
+     * @return the scoped instance
+     */
+    private T create(ScopeContext context) {
+        final T value = unscoped.get();
+        final Object stored = strength == null ? value : ScopedReferences.wrap(value, strength);
+        final Object encoded = encoding().key;
+        
+        // the stored reference to a reclaimed instance which is about to be replaced
+        Object expected = null;
+        
+        while (true) {
+            final Object existing;
+            
+            if (expected == null) {
+                existing = store(context, stored);
+            } else if (context.replace(encoded, expected, stored)) {
+                existing = null;
+            } else {
+                existing = lookup(context);
+                if (existing == expected) {
+                    // the reclaimed reference is held by a read-only parent context
+                    context.put(encoded, stored);
+                    return value;
+                }
+            }
+            
+            if (existing == null) {
+                return value;
+            }
+            
+            final Object referent = ScopedReferences.dereference(existing);
+            if (referent == null) {
+                LOG.trace("Replacing reclaimed instance of {}", key);
+                expected = existing;
+            } else {
+                LOG.trace("Concurrent creation of {} detected, discarding {}", key, value);
+                if (scope instanceof DestroyStrategy) {
+                    // the caller gets a valid instance, failures of the duplicate are logged only
+                    DestroyStrategy.class.cast(scope).destroy(value, LoggingDestroyErrors.INSTANCE);
+                }
+                return unmask(referent);
+            }
+        }
+    }
+    
+    private Object store(ScopeContext context, Object stored) {
+        if (isIndexed(context)) {
+            return SlotScopeContext.class.cast(context).store(encoding().slot, stored);
+        } else {
+            return context.putIfAbsent(encoding().key, stored);
+        }
+    }
+    
+    /**
+     * Creates the scoped instance exactly once per context. Concurrent callers
+     * wait for the creating thread instead of creating their own instance.
+     * 
+     * @param context the current context
+     * @return the scoped instance
+     */
+    private T createOnce(ScopeContext context) {
+        final Flight flight = new Flight(context, encoding().key);
+        
+        while (true) {
+            final Flight existing = options.getFlights().putIfAbsent(flight, flight);
+            
+            if (existing == null) {
+                try {
+                    // another thread may have finished in the meantime
+                    final Object masked = ScopedReferences.dereference(lookup(context));
+                    return masked == null ? create(context) : this.<T>unmask(masked);
+                } finally {
+                    options.getFlights().remove(flight);
+                    flight.land();
+                }
+            } else if (existing.isOwnedByCurrentThread()) {
+                // circular dependency, guice will take care of it
+                return create(context);
+            } else {
+                LOG.trace("Waiting for concurrent creation of {}", key);
+                existing.await();
+                final Object masked = ScopedReferences.dereference(lookup(context));
+                if (masked != null) {
+                    return unmask(masked);
+                }
+                // the creating thread failed, retry
+            }
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <S> S unmask(Object masked) {
+        return (S) SlotScopeContext.unmask(masked);
+    }
 
     @Override
     public String toString() {
         return unscoped + " in " + scope;
     }
     
+    /**
+     * The encoded key of a provider and its slot.
+     *
+     * @since 2.1
+     */
+    private static final class Encoding {
+        
+        private final Object key;
+        
+        // -1 if the provider has no slots
+        private final int slot;
+        
+        Encoding(Object key, int slot) {
+            this.key = key;
+            this.slot = slot;
+        }
+        
+    }
+    
+    /**
+     * A creation in progress, identified by context and encoded key.
+     *
+     * @since 2.1
+     */
+    static final class Flight {
+        
+        private final ScopeContext context;
+        private final Object encoded;
+        private final Thread owner = Thread.currentThread();
+        private final CountDownLatch latch = new CountDownLatch(1);
+        
+        Flight(ScopeContext context, Object encoded) {
+            this.context = context;
+            this.encoded = encoded;
+        }
+        
+        boolean isOwnedByCurrentThread() {
+            return owner == Thread.currentThread();
+        }
+        
+        void land() {
+            latch.countDown();
+        }
+        
+        void await() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        latch.await();
+                        return;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        
+        @Override
+        public boolean equals(Object that) {
+            if (this == that) {
+                return true;
+            } else if (that instanceof Flight) {
+                final Flight other = Flight.class.cast(that);
+                return context == other.context && encoded.equals(other.encoded);
+            } else {
+                return false;
+            }
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(context) + encoded.hashCode();
+        }
+        
+    }
+    
 }
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link DestroyStrategy} which knows in advance whether it applies to
+ * instances of a given type. This allows the bound strategies to be resolved
+ * once per type instead of being tested against every single instance.
+ * Strategies which don't implement this interface are always applied.
+ *
+ * @since 2.1
+ */
+@Beta
+public interface SelectiveDestroyStrategy extends DestroyStrategy {
+
+    /**
+     * Checks whether this strategy may need to destroy instances of the given type.
+     * The result must not change over time.
+     *
+     * @since 2.1
+     * @param type the concrete type of an instance
+     * @return true if this strategy applies to instances of the given type, false otherwise
+     */
+    boolean appliesTo(Class<?> type);
+    
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+
+/**
+ * A process-wide {@link UnitOfWorkScope} which any number of threads can join concurrently.
+ * The unit of work starts with the first participant joining and ends with the last one
+ * leaving, which destroys all scoped instances exactly once. All participants share the
+ * same scoped instances. State changes are atomic and accessing scoped instances of
+ * an active unit of work does not lock. Concurrent participants share one creation of
+ * a missing instance, unless {@link ScopeConfig#SINGLE_FLIGHT} is disabled.
+ *
+ * <p>
+ *   {@link #begin()} and {@link #end()} are equivalent to {@link #join()} and {@link #leave()},
+ *   every call to {@link #join()} has to be followed by exactly one call to {@link #leave()}.
+ * </p>
+ *
+ * @since 2.1
+ */
+@Beta
+public final class SharedUnitOfWorkScope extends AbstractUnitOfWorkScope implements SupplyingScope {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedUnitOfWorkScope.class);
+
+    private final ScopingOptions options = new ScopingOptions();
+
+    private final AtomicReference<Run> current = new AtomicReference<Run>();
+
+    SharedUnitOfWorkScope() {
+        options.setSingleFlight(true);
+    }
+
+    @Inject(optional = true)
+    void setSingleFlight(@Named(ScopeConfig.SINGLE_FLIGHT) boolean singleFlight) {
+        options.setSingleFlight(singleFlight);
+    }
+
+    @Inject(optional = true)
+    void setEncoder(KeyEncoder encoder) {
+        options.setEncoder(encoder);
+    }
+    
+    @Override
+    void setListener(ScopeListener listener) {
+        super.setListener(listener);
+        options.setListener(listener);
+    }
+
+    @Override
+    ScopingOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+        return new ScopingProvider<T>(this, key, unscoped, options);
+    }
+
+    /**
+     * Joins the current unit of work or starts a new one if there is none.
+     *
+     * @since 2.1
+     */
+    public void join() {
+        enter();
+    }
+
+    /**
+     * Joins the current unit of work or starts a new one.
+     *
+     * @return true if a new unit of work has been started, false if the current one has been joined
+     */
+    private boolean enter() {
+        while (true) {
+            final Run run = current.get();
+            if (run != null && run.join()) {
+                LOG.trace("Joined {}", this);
+                return false;
+            }
+            final Run started = new Run();
+            if (current.compareAndSet(run, started)) {
+                LOG.trace("Entered {}", this);
+                fireBegin();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Leaves the current unit of work. The last participant leaving ends the
+     * unit of work and destroys all of its scoped instances.
+     *
+     * @since 2.1
+     * @throws IllegalStateException if there is no unit of work in progress
+     */
+    public void leave() {
+        final Run run = current.get();
+        Preconditions.checkState(run != null, "No %s block in progress", this);
+
+        if (run.leave()) {
+            LOG.trace("Exiting {}", this);
+            current.compareAndSet(run, null);
+            final ScopeContext context = run.context;
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        destroy(context);
+                    } finally {
+                        context.clear();
+                    }
+                }
+
+            });
+            LOG.trace("Successfully exited {}", this);
+            fireEnd();
+        } else {
+            LOG.trace("Left {}", this);
+        }
+    }
+
+    /**
+     * Provides the number of participants of the current unit of work.
+     *
+     * @since 2.1
+     * @return the number of participants, 0 if there is no unit of work in progress
+     */
+    public int getParticipants() {
+        final Run run = current.get();
+        return run == null ? 0 : run.participants.get();
+    }
+
+    /**
+     * Joins the current unit of work or starts a new one. Every handle is
+     * a participant, closing it leaves the unit of work. Only the handle of
+     * the participant which started the unit of work is its owner, although
+     * the last participant leaving ends it.
+     */
+    @Override
+    public UnitOfWorkHandle open() {
+        return new Handle(enter());
+    }
+
+    @Override
+    public void begin() {
+        join();
+    }
+
+    @Override
+    public void end() {
+        leave();
+    }
+
+    @Override
+    public boolean isActive() {
+        return getParticipants() > 0;
+    }
+
+    @Override
+    public ScopeContext get() {
+        final Run run = current.get();
+        return run == null || run.participants.get() == 0 ? null : run.context;
+    }
+
+    /**
+     * The handle of a single participant, which leaves the unit of work at most once.
+     *
+     * @since 2.1
+     */
+    private final class Handle implements UnitOfWorkHandle {
+        
+        private final boolean owner;
+        
+        private final AtomicBoolean closed = new AtomicBoolean();
+        
+        Handle(boolean owner) {
+            this.owner = owner;
+        }
+        
+        @Override
+        public boolean isOwner() {
+            return owner;
+        }
+        
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                leave();
+            }
+        }
+        
+    }
+
+    /**
+     * One unit of work, from the first participant joining to the last one leaving.
+     *
+     * @since 2.1
+     */
+    private static final class Run {
+
+        private final ScopeContext context = new DefaultScopeContext();
+
+        private final AtomicInteger participants = new AtomicInteger(1);
+
+        /**
+         * Joins this run, unless it already ended.
+         *
+         * @return true if joined, false if this run ended
+         */
+        boolean join() {
+            while (true) {
+                final int count = participants.get();
+                if (count == 0) return false;
+                if (participants.compareAndSet(count, count + 1)) return true;
+            }
+        }
+
+        /**
+         * Leaves this run.
+         *
+         * @return true if the last participant left, false otherwise
+         * @throws IllegalStateException if there are no participants
+         */
+        boolean leave() {
+            while (true) {
+                final int count = participants.get();
+                if (count == 0) throw new IllegalStateException("No participants left");
+                if (participants.compareAndSet(count, count - 1)) return count == 1;
+            }
+        }
+
+    }
+
+}
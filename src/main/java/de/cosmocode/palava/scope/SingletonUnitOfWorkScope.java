@@ -16,24 +16,28 @@
 
 package de.cosmocode.palava.scope;
 
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.MapEvictionListener;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Sets;
 import com.google.inject.Key;
 import com.google.inject.Provider;
-import com.google.inject.Scopes;
 import com.google.inject.Singleton;
 
 /**
- * A {@link Singleton} based {@link UnitOfWorkScope}.
+ * A {@link Singleton} based {@link UnitOfWorkScope}. Every scoped binding is
+ * created once per unit of work and shared by all threads. Instances are published
+ * through a volatile field, accessing an existing instance does not lock.
  *
  * @since 2.0
  * @author Willi Schoenborn
@@ -45,6 +49,7 @@ final class SingletonUnitOfWorkScope extends AbstractUnitOfWorkScope
     private static final Logger LOG = LoggerFactory.getLogger(SingletonUnitOfWorkScope.class);
 
     private final Set<Object> context;
+    private final List<SingletonProvider<?>> providers = new CopyOnWriteArrayList<SingletonProvider<?>>();
     private boolean active;
     
     SingletonUnitOfWorkScope() {
@@ -58,6 +63,7 @@ final class SingletonUnitOfWorkScope extends AbstractUnitOfWorkScope
         checkNotActive();
         LOG.trace("Entering {}", this);
         active = true;
+        fireBegin();
     }
 
     @Override
@@ -69,18 +75,9 @@ final class SingletonUnitOfWorkScope extends AbstractUnitOfWorkScope
     public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped) {
         Preconditions.checkNotNull(key, "Key");
         Preconditions.checkNotNull(unscoped, "Unscoped");
-        return new Provider<T>() {
-            
-            private final Provider<T> provider = Scopes.SINGLETON.scope(key, unscoped);
-            
-            @Override
-            public T get() {
-                final T instance = provider.get();
-                context.add(instance);
-                return instance;
-            }
-            
-        };
+        final SingletonProvider<T> provider = new SingletonProvider<T>(key, unscoped);
+        providers.add(provider);
+        return provider;
     }
     
     @Override
@@ -93,14 +90,91 @@ final class SingletonUnitOfWorkScope extends AbstractUnitOfWorkScope
         checkActive();
         LOG.trace("Exiting {}", this);
 
-        try {
-            destroy(context);
-        } finally {
-            context.clear();
-            active = false;
+        // detach the instances, the context will be reused by the next unit of work
+        final List<Object> detached = Lists.newArrayList(context);
+        context.clear();
+        for (SingletonProvider<?> provider : providers) {
+            provider.reset();
         }
+        active = false;
+        
+        execute(new Runnable() {
+            
+            @Override
+            public void run() {
+                destroy(detached);
+            }
+            
+        });
         
         LOG.trace("Successfully exited {}", this);
+        fireEnd();
+    }
+    
+    /**
+     * A provider which creates its instance once per unit of work using
+     * double-checked locking and registers it for destruction on creation.
+     *
+     * @since 2.1
+     * @param <T> generic target type
+     */
+    private final class SingletonProvider<T> implements Provider<T> {
+        
+        private final Key<T> key;
+        private final Provider<T> unscoped;
+        
+        // the masked instance, null until created
+        private volatile Object instance;
+        
+        SingletonProvider(Key<T> key, Provider<T> unscoped) {
+            this.key = key;
+            this.unscoped = unscoped;
+        }
+        
+        @Override
+        public T get() {
+            final ScopeListener listener = getListener();
+            Object current = instance;
+            if (current == null) {
+                synchronized (this) {
+                    current = instance;
+                    if (current == null) {
+                        final long start = listener == null ? 0L : System.nanoTime();
+                        final T created = unscoped.get();
+                        LOG.trace("Created {} for {}", created, key);
+                        if (created != null) {
+                            context.add(created);
+                        }
+                        current = SlotScopeContext.mask(created);
+                        instance = current;
+                        if (listener != null) {
+                            listener.onProvision(SingletonUnitOfWorkScope.this, key, false, System.nanoTime() - start);
+                        }
+                        return unmask(current);
+                    }
+                }
+            }
+            if (listener != null) {
+                listener.onProvision(SingletonUnitOfWorkScope.this, key, true, 0L);
+            }
+            return unmask(current);
+        }
+        
+        @SuppressWarnings("unchecked")
+        private T unmask(Object current) {
+            final T scoped = (T) SlotScopeContext.unmask(current);
+            return scoped;
+        }
+        
+        void reset() {
+            instance = null;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s[%s]", unscoped, SingletonUnitOfWorkScope.this);
+        }
+        
     }
     
 }
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A {@link ScopeContext} which stores its values in an array indexed
+ * by the slots of a {@link ScopeSlots} instance. {@link ScopingProvider}s
+ * access the array directly using their pre-assigned slot, the {@link Map}
+ * view resolves the slot of a key using {@link ScopeSlots#indexOf(Object)}.
+ *
+ * <p>
+ *   Reads are lock-free, writes are guarded by this context.
+ * </p>
+ *
+ * @since 2.1
+ */
+@Beta
+final class SlotScopeContext extends AbstractMap<Object, Object> implements ScopeContext {
+
+    // marks null values
+    private static final Object NULL = new Object();
+
+    private final ScopeSlots slots;
+
+    private volatile AtomicReferenceArray<Object> values;
+
+    SlotScopeContext(ScopeSlots slots) {
+        this.slots = Preconditions.checkNotNull(slots, "Slots");
+        this.values = new AtomicReferenceArray<Object>(slots.size());
+    }
+
+    /**
+     * Checks whether this context is indexed by the given slots.
+     *
+     * @param other the slots
+     * @return true if this context uses the given slots, false otherwise
+     */
+    boolean isIndexedBy(ScopeSlots other) {
+        return slots == other;
+    }
+
+    /**
+     * Looks up the masked value stored in the given slot.
+     *
+     * @param slot the slot
+     * @return the masked value or null if the slot is empty
+     */
+    Object lookup(int slot) {
+        final AtomicReferenceArray<Object> current = values;
+        return slot < current.length() ? current.get(slot) : null;
+    }
+
+    /**
+     * Stores the given value in the given slot, unless the slot is already taken.
+     *
+     * @param slot the slot
+     * @param value the value, may be null
+     * @return the masked value previously stored in the slot or null if the slot was empty
+     */
+    synchronized Object store(int slot, Object value) {
+        final Object existing = lookup(slot);
+        if (existing == null) {
+            ensureCapacity(slot);
+            values.set(slot, mask(value));
+        }
+        return existing;
+    }
+
+    private synchronized Object set(int slot, Object value) {
+        final Object existing = lookup(slot);
+        ensureCapacity(slot);
+        values.set(slot, value);
+        return existing;
+    }
+
+    private void ensureCapacity(int slot) {
+        final AtomicReferenceArray<Object> current = values;
+        if (slot < current.length()) return;
+        final int length = Math.max(Math.max(slot + 1, slots.size()), current.length() * 2);
+        final AtomicReferenceArray<Object> grown = new AtomicReferenceArray<Object>(length);
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        values = grown;
+    }
+
+    static Object mask(Object value) {
+        return value == null ? NULL : value;
+    }
+
+    static Object unmask(Object value) {
+        return value == NULL ? null : value;
+    }
+
+    @Override
+    public Object get(Object key) {
+        final int slot = slots.indexOf(key);
+        return slot == -1 ? null : unmask(lookup(slot));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        final int slot = slots.indexOf(key);
+        return slot != -1 && lookup(slot) != null;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        return unmask(set(slots.slotOf(key), mask(value)));
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        return unmask(store(slots.slotOf(key), value));
+    }
+
+    @Override
+    public Object remove(Object key) {
+        final int slot = slots.indexOf(key);
+        return slot == -1 ? null : unmask(set(slot, null));
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        final int slot = slots.indexOf(key);
+        if (slot == -1) return false;
+        final Object existing = lookup(slot);
+        if (existing != null && Objects.equal(unmask(existing), value)) {
+            values.set(slot, null);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+        final int slot = slots.indexOf(key);
+        if (slot == -1) return false;
+        final Object existing = lookup(slot);
+        if (existing != null && Objects.equal(unmask(existing), oldValue)) {
+            values.set(slot, mask(newValue));
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized Object replace(Object key, Object value) {
+        final int slot = slots.indexOf(key);
+        if (slot == -1) return null;
+        final Object existing = lookup(slot);
+        if (existing == null) {
+            return null;
+        } else {
+            values.set(slot, mask(value));
+            return unmask(existing);
+        }
+    }
+
+    /**
+     * Destroys all keys and values of this context using the given strategies. Unlike
+     * iterating the {@link #entrySet()}, this does not create a snapshot.
+     *
+     * @param keyStrategy the destroy strategy of keys
+     * @param valueStrategy the destroy strategy of values
+     * @param errors the errors
+     */
+    void destroy(DestroyStrategy keyStrategy, DestroyStrategy valueStrategy, DestroyErrors errors) {
+        final AtomicReferenceArray<Object> current = values;
+        for (int slot = 0; slot < current.length(); slot++) {
+            final Object value = current.get(slot);
+            if (value == null) continue;
+            keyStrategy.destroy(slots.keyAt(slot), errors);
+            valueStrategy.destroy(unmask(value), errors);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        // clears in place, which allows to reuse this context
+        final AtomicReferenceArray<Object> current = values;
+        for (int slot = 0; slot < current.length(); slot++) {
+            current.set(slot, null);
+        }
+    }
+
+    @Override
+    public Set<Entry<Object, Object>> entrySet() {
+        return new AbstractSet<Entry<Object, Object>>() {
+
+            @Override
+            public Iterator<Entry<Object, Object>> iterator() {
+                return snapshot().iterator();
+            }
+
+            @Override
+            public int size() {
+                return SlotScopeContext.this.size();
+            }
+
+        };
+    }
+
+    private List<Entry<Object, Object>> snapshot() {
+        final AtomicReferenceArray<Object> current = values;
+        final List<Entry<Object, Object>> entries = Lists.newArrayList();
+        for (int slot = 0; slot < current.length(); slot++) {
+            final Object value = current.get(slot);
+            if (value == null) continue;
+            entries.add(Maps.immutableEntry(slots.keyAt(slot), unmask(value)));
+        }
+        return entries;
+    }
+
+    @Override
+    public int size() {
+        final AtomicReferenceArray<Object> current = values;
+        int size = 0;
+        for (int slot = 0; slot < current.length(); slot++) {
+            if (current.get(slot) != null) size++;
+        }
+        return size;
+    }
+
+}
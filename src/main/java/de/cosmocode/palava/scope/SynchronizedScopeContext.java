@@ -0,0 +1,94 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.AbstractMap;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A thread-safe {@link ScopeContext} view of a context which is not thread-safe.
+ * All operations are guarded by this view, iteration uses a snapshot.
+ *
+ * @since 2.1
+ */
+final class SynchronizedScopeContext extends AbstractMap<Object, Object> implements ScopeContext {
+
+    private final ScopeContext context;
+
+    SynchronizedScopeContext(ScopeContext context) {
+        this.context = Preconditions.checkNotNull(context, "Context");
+    }
+
+    @Override
+    public synchronized Object get(Object key) {
+        return context.get(key);
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return context.containsKey(key);
+    }
+
+    @Override
+    public synchronized Object put(Object key, Object value) {
+        return context.put(key, value);
+    }
+
+    @Override
+    public synchronized Object putIfAbsent(Object key, Object value) {
+        return context.putIfAbsent(key, value);
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        return context.remove(key);
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        return context.remove(key, value);
+    }
+
+    @Override
+    public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+        return context.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public synchronized Object replace(Object key, Object value) {
+        return context.replace(key, value);
+    }
+
+    @Override
+    public synchronized void clear() {
+        context.clear();
+    }
+
+    @Override
+    public synchronized int size() {
+        return context.size();
+    }
+
+    @Override
+    public synchronized Set<Entry<Object, Object>> entrySet() {
+        return ImmutableSet.copyOf(context.entrySet());
+    }
+
+}
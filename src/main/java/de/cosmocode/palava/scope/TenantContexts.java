@@ -0,0 +1,177 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.MapEvictionListener;
+
+/**
+ * A bounded, segmented LRU of tenant contexts. New tenants are admitted to the
+ * probation segment and promoted to the protected segment on their second access,
+ * which prevents a burst of tenants seen only once from evicting the hot ones.
+ * Contexts demoted from the protected segment get another chance in the probation
+ * segment. Once the maximum size is exceeded, the eldest context of the probation
+ * segment is evicted and reported to the listener, outside of the lock. The probation
+ * segment may use the capacity the protected segment does not use (yet). Contexts
+ * leaving this cache, by eviction or removal, are marked as evicted.
+ *
+ * @since 2.1
+ */
+final class TenantContexts {
+
+    private final int maximumSize;
+
+    private final int protectedSize;
+
+    private final Map<Object, TenantContext> probation = new LinkedHashMap<Object, TenantContext>(16, 0.75f, true);
+
+    private final Map<Object, TenantContext> protect = new LinkedHashMap<Object, TenantContext>(16, 0.75f, true);
+
+    private final MapEvictionListener<Object, ScopeContext> listener;
+
+    // at most one context is evicted per access, guarded by this
+    private Object evictedTenant;
+
+    private TenantContext evictedContext;
+
+    TenantContexts(int maximumSize, MapEvictionListener<Object, ScopeContext> listener) {
+        Preconditions.checkArgument(maximumSize > 0, "MaximumSize must be positive");
+        this.maximumSize = maximumSize;
+        this.protectedSize = maximumSize - Math.max(1, maximumSize / 5);
+        this.listener = Preconditions.checkNotNull(listener, "Listener");
+    }
+
+    /**
+     * Provides the context of the given tenant, creating it if necessary.
+     *
+     * @param tenant the tenant id
+     * @return the context of the tenant
+     */
+    TenantContext get(Object tenant) {
+        final TenantContext context;
+        final Object tenantToEvict;
+        final TenantContext contextToEvict;
+
+        synchronized (this) {
+            context = lookup(tenant);
+            tenantToEvict = evictedTenant;
+            contextToEvict = evictedContext;
+            evictedTenant = null;
+            evictedContext = null;
+        }
+
+        if (contextToEvict != null) {
+            listener.onEviction(tenantToEvict, contextToEvict);
+        }
+        return context;
+    }
+
+    private TenantContext lookup(Object tenant) {
+        final TenantContext protectedContext = protect.get(tenant);
+        if (protectedContext != null) {
+            return protectedContext;
+        }
+
+        final TenantContext probationContext = probation.remove(tenant);
+        if (probationContext == null) {
+            final TenantContext created = new TenantContext();
+            admit(tenant, created);
+            return created;
+        }
+
+        protect.put(tenant, probationContext);
+        if (protect.size() > protectedSize) {
+            final Map.Entry<Object, TenantContext> eldest = eldest(protect);
+            protect.remove(eldest.getKey());
+            admit(eldest.getKey(), eldest.getValue());
+        }
+        return probationContext;
+    }
+
+    private void admit(Object tenant, TenantContext context) {
+        probation.put(tenant, context);
+        if (probation.size() + protect.size() > maximumSize) {
+            final Map.Entry<Object, TenantContext> eldest = eldest(probation);
+            probation.remove(eldest.getKey());
+            evictedTenant = eldest.getKey();
+            evictedContext = eldest.getValue();
+            evictedContext.evicted = true;
+        }
+    }
+
+    private static Map.Entry<Object, TenantContext> eldest(Map<Object, TenantContext> segment) {
+        return segment.entrySet().iterator().next();
+    }
+
+    /**
+     * Removes the context of the given tenant.
+     *
+     * @param tenant the tenant id
+     * @return the removed context or null if there was none
+     */
+    synchronized TenantContext remove(Object tenant) {
+        final TenantContext protectedContext = protect.remove(tenant);
+        final TenantContext context = protectedContext == null ? probation.remove(tenant) : protectedContext;
+        if (context != null) {
+            context.evicted = true;
+        }
+        return context;
+    }
+
+    /**
+     * Removes all contexts.
+     *
+     * @return all removed contexts
+     */
+    synchronized List<TenantContext> clear() {
+        final List<TenantContext> removed = ImmutableList.copyOf(Iterables.concat(probation.values(), protect.values()));
+        probation.clear();
+        protect.clear();
+        for (TenantContext context : removed) {
+            context.evicted = true;
+        }
+        return removed;
+    }
+
+    /**
+     * The context of a tenant, which knows whether it has left the cache.
+     *
+     * @since 2.1
+     */
+    static final class TenantContext extends ConcurrentMapScopeContext {
+
+        private volatile boolean evicted;
+
+        /**
+         * Checks whether this context has been evicted or removed. Evicted contexts
+         * are about to be destroyed and must not be used anymore.
+         *
+         * @return true if this context has left the cache, false otherwise
+         */
+        boolean isEvicted() {
+            return evicted;
+        }
+
+    }
+
+}
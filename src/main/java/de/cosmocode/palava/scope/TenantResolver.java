@@ -16,20 +16,23 @@
 
 package de.cosmocode.palava.scope;
 
-import com.google.common.base.Function;
-import com.google.inject.Key;
+import com.google.common.annotations.Beta;
 
 /**
- * A noop implementation used by {@link ScopingProvider}.
- * 
- * @author Willi Schoenborn
- * @param <T> generic key type
+ * Resolves the tenant of the current request, see {@link TenantScope}.
+ *
+ * @since 2.1
  */
-final class NoopKeyEncoder<T> implements Function<Key<T>, Object> {
+@Beta
+public interface TenantResolver {
+
+    /**
+     * Resolves the tenant of the current request. Tenant ids are compared
+     * using {@link Object#equals(Object)}.
+     *
+     * @since 2.1
+     * @return the current tenant id or null if there is none
+     */
+    Object resolveTenant();
 
-    @Override
-    public Object apply(Key<T> input) {
-        return input;
-    }
-    
 }
@@ -0,0 +1,237 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapEvictionListener;
+import com.google.inject.Inject;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * A scope which holds one {@link ScopeContext} per tenant, as resolved by the bound
+ * {@link TenantResolver}, instead of one per thread or unit of work. Tenant contexts
+ * are held in a bounded cache whose size can be configured using
+ * {@link ScopeConfig#TENANT_MAXIMUM_SIZE}, 1000 by default. Tenants accessed repeatedly
+ * are preferred over tenants accessed once, so hot tenants keep their scoped instances,
+ * e.g. warm connection pools. The instances of evicted tenants are destroyed using
+ * the bound {@link DestroyStrategy} and {@link DestroyExecutor}. Concurrent callers
+ * share one creation of a missing instance.
+ *
+ * <p>
+ *   If a {@link UnitOfWorkScope} is bound, the context of the current tenant is remembered
+ *   in the active unit of work, so a request accessing several tenant scoped bindings
+ *   counts as a single access of its tenant and looks up the tenant context only once.
+ *   Otherwise every provision counts as an access. A remembered context which has been
+ *   evicted or invalidated in the meantime is looked up again, otherwise the unit of work
+ *   would keep using the destroyed context and leak the instances created there.
+ * </p>
+ *
+ * <p>
+ *   Evicting a tenant which is still in use destroys its instances while they
+ *   are accessed, and instances created in an evicted context right before its destruction
+ *   completes are never destroyed, so the maximum size should exceed the number of
+ *   concurrently active tenants by far.
+ * </p>
+ *
+ * @since 2.1
+ */
+@Beta
+public final class TenantScope extends DestroyingScope implements SupplyingScope,
+    MapEvictionListener<Object, ScopeContext>, Disposable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TenantScope.class);
+
+    private final ScopingOptions options = new ScopingOptions();
+
+    // the key of the remembered tenant context inside of a unit of work
+    private final Object memoKey = new Object();
+
+    private TenantResolver resolver;
+
+    private SupplyingScope unitOfWork;
+
+    private int maximumSize = 1000;
+
+    // created on first access, after this scope has been configured
+    private volatile TenantContexts contexts;
+
+    TenantScope() {
+        options.setSingleFlight(true);
+    }
+
+    @Inject
+    void setResolver(TenantResolver resolver) {
+        this.resolver = Preconditions.checkNotNull(resolver, "Resolver");
+    }
+
+    @Inject(optional = true)
+    void setMaximumSize(@Named(ScopeConfig.TENANT_MAXIMUM_SIZE) int maximumSize) {
+        Preconditions.checkArgument(maximumSize > 0, "MaximumSize must be positive");
+        this.maximumSize = maximumSize;
+    }
+
+    @Inject(optional = true)
+    void setUnitOfWorkScope(UnitOfWorkScope scope) {
+        if (scope instanceof SupplyingScope) {
+            this.unitOfWork = SupplyingScope.class.cast(scope);
+        }
+    }
+
+    @Inject(optional = true)
+    void setSingleFlight(@Named(ScopeConfig.SINGLE_FLIGHT) boolean singleFlight) {
+        options.setSingleFlight(singleFlight);
+    }
+
+    @Inject(optional = true)
+    void setEncoder(KeyEncoder encoder) {
+        options.setEncoder(encoder);
+    }
+
+    @Override
+    void setListener(ScopeListener listener) {
+        super.setListener(listener);
+        options.setListener(listener);
+    }
+
+    @Override
+    ScopingOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+        return new ScopingProvider<T>(this, key, unscoped, options);
+    }
+
+    private TenantContexts getContexts() {
+        TenantContexts current = contexts;
+        if (current == null) {
+            synchronized (this) {
+                current = contexts;
+                if (current == null) {
+                    current = new TenantContexts(maximumSize, this);
+                    contexts = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Provides the context of the current tenant.
+     *
+     * @return the context of the current tenant or null if there is none
+     */
+    @Override
+    public ScopeContext get() {
+        Preconditions.checkState(resolver != null, "No TenantResolver bound");
+        final Object tenant = resolver.resolveTenant();
+        if (tenant == null) return null;
+        
+        final ScopeContext current = unitOfWork == null ? null : unitOfWork.get();
+        if (current == null) return getContexts().get(tenant);
+        
+        final Object remembered = current.get(memoKey);
+        if (remembered instanceof Memo) {
+            final Memo memo = Memo.class.cast(remembered);
+            if (memo.tenant.equals(tenant) && !memo.context.isEvicted()) {
+                return memo.context;
+            }
+        }
+        final TenantContexts.TenantContext context = getContexts().get(tenant);
+        current.put(memoKey, new Memo(tenant, context));
+        return context;
+    }
+
+    @Override
+    public void onEviction(Object tenant, ScopeContext context) {
+        LOG.debug("Evicted tenant {} from {}", tenant, this);
+        destroyLater(context);
+    }
+
+    /**
+     * Removes the context of the given tenant and destroys its scoped instances.
+     *
+     * @since 2.1
+     * @param tenant the tenant id
+     * @throws NullPointerException if tenant is null
+     */
+    public void invalidate(Object tenant) {
+        Preconditions.checkNotNull(tenant, "Tenant");
+        final TenantContexts current = contexts;
+        if (current == null) return;
+        final ScopeContext context = current.remove(tenant);
+        if (context == null) return;
+        destroyLater(context);
+    }
+
+    private void destroyLater(final ScopeContext context) {
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    destroy(context);
+                } finally {
+                    context.clear();
+                }
+            }
+
+        });
+    }
+
+    @Override
+    public void dispose() throws LifecycleException {
+        final TenantContexts current = contexts;
+        if (current == null) return;
+        for (ScopeContext context : current.clear()) {
+            try {
+                destroy(context);
+            } finally {
+                context.clear();
+            }
+        }
+    }
+
+    /**
+     * The context of a tenant remembered in a unit of work.
+     *
+     * @since 2.1
+     */
+    private static final class Memo {
+
+        private final Object tenant;
+
+        private final TenantContexts.TenantContext context;
+
+        Memo(Object tenant, TenantContexts.TenantContext context) {
+            this.tenant = tenant;
+            this.context = context;
+        }
+
+    }
+
+}
@@ -0,0 +1,359 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * A {@link ScopeContext} which must only be accessed by the thread owning the
+ * current unit of work. Entries are stored in a single array, without any volatile reads,
+ * locks or CAS operations. Small contexts keep their entries packed and scan them
+ * linearly, comparing identities first. Larger contexts switch to an open addressing table
+ * using linear probing. Despite implementing {@link java.util.concurrent.ConcurrentMap}
+ * this context is <strong>not</strong> thread-safe, see
+ * {@link ThreadConfinedScopeContextFactory#share(ScopeContext)}.
+ *
+ * @since 2.1
+ */
+final class ThreadConfinedScopeContext extends AbstractMap<Object, Object> implements ScopeContext {
+
+    // the maximum number of packed entries
+    static final int INLINE_THRESHOLD = 8;
+
+    // keys at even, values at odd indices, a hashed table is at most half full
+    private Object[] table;
+
+    private boolean hashed;
+
+    private int size;
+
+    private final ScopeContextSizes sizes;
+
+    ThreadConfinedScopeContext() {
+        this(INLINE_THRESHOLD, null);
+    }
+
+    /**
+     * Creates a context pre-sized for the given number of entries.
+     *
+     * @param expectedSize the expected number of entries
+     * @param sizes the sizes which will be updated on {@link #clear()}, may be null
+     */
+    ThreadConfinedScopeContext(int expectedSize, ScopeContextSizes sizes) {
+        Preconditions.checkArgument(expectedSize >= 0, "Expected size must not be negative");
+        if (expectedSize <= INLINE_THRESHOLD) {
+            this.table = new Object[2 * Math.max(expectedSize, 2)];
+        } else {
+            this.table = new Object[2 * capacityFor(expectedSize)];
+            this.hashed = true;
+        }
+        this.sizes = sizes;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 2;
+        while (capacity < 2 * expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int indexFor(Object key, int mask) {
+        final int hash = key.hashCode();
+        return ((hash ^ (hash >>> 16)) << 1) & mask;
+    }
+
+    /**
+     * Finds the index of the given key.
+     *
+     * @param key the key
+     * @return the index of the key or {@code -(insertion point + 1)} if there is no such key
+     */
+    private int indexOf(Object key) {
+        return hashed ? probe(key) : scan(key);
+    }
+
+    private int scan(Object key) {
+        final Object[] current = table;
+        final int end = 2 * size;
+        for (int index = 0; index < end; index += 2) {
+            if (current[index] == key) return index;
+        }
+        for (int index = 0; index < end; index += 2) {
+            if (current[index].equals(key)) return index;
+        }
+        return -(end + 1);
+    }
+
+    private int probe(Object key) {
+        final Object[] current = table;
+        final int mask = current.length - 1;
+        int index = indexFor(key, mask);
+        while (true) {
+            final Object candidate = current[index];
+            if (candidate == null) {
+                return -(index + 1);
+            } else if (candidate == key || candidate.equals(key)) {
+                return index;
+            }
+            index = (index + 2) & mask;
+        }
+    }
+
+    private void insert(int index, Object key, Object value) {
+        int free = index;
+        if (!hashed && free == table.length) {
+            if (size < INLINE_THRESHOLD) {
+                table = Arrays.copyOf(table, Math.min(2 * table.length, 2 * INLINE_THRESHOLD));
+            } else {
+                rehash(capacityFor(size + 1));
+                free = -(probe(key) + 1);
+            }
+        }
+        table[free] = key;
+        table[free + 1] = SlotScopeContext.mask(value);
+        if (++size * 4 > table.length && hashed) {
+            rehash(table.length);
+        }
+    }
+
+    private void rehash(int capacity) {
+        final Object[] old = table;
+        final Object[] resized = new Object[2 * capacity];
+        final int mask = resized.length - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            final Object key = old[i];
+            if (key == null) continue;
+            int index = indexFor(key, mask);
+            while (resized[index] != null) {
+                index = (index + 2) & mask;
+            }
+            resized[index] = key;
+            resized[index + 1] = old[i + 1];
+        }
+        table = resized;
+        hashed = true;
+    }
+
+    /**
+     * Deletes the entry at the given index and moves displaced
+     * or packed entries into the created gap.
+     *
+     * @param index the index of the entry
+     */
+    private void delete(int index) {
+        final Object[] current = table;
+        if (!hashed) {
+            // moves the last entry into the gap
+            final int last = 2 * (size - 1);
+            current[index] = current[last];
+            current[index + 1] = current[last + 1];
+            current[last] = null;
+            current[last + 1] = null;
+            size--;
+            return;
+        }
+        final int mask = current.length - 1;
+        int gap = index;
+        int next = (gap + 2) & mask;
+        while (current[next] != null) {
+            final int home = indexFor(current[next], mask);
+            // the entry may only move to the gap if the gap lies between its home and its position
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                current[gap] = current[next];
+                current[gap + 1] = current[next + 1];
+                gap = next;
+            }
+            next = (next + 2) & mask;
+        }
+        current[gap] = null;
+        current[gap + 1] = null;
+        size--;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (key == null) return null;
+        final int index = indexOf(key);
+        return index < 0 ? null : SlotScopeContext.unmask(table[index + 1]);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        Preconditions.checkNotNull(key, "Key");
+        final int index = indexOf(key);
+        if (index < 0) {
+            insert(-(index + 1), key, value);
+            return null;
+        } else {
+            final Object existing = table[index + 1];
+            table[index + 1] = SlotScopeContext.mask(value);
+            return SlotScopeContext.unmask(existing);
+        }
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        Preconditions.checkNotNull(key, "Key");
+        final int index = indexOf(key);
+        if (index < 0) {
+            insert(-(index + 1), key, value);
+            return null;
+        } else {
+            return SlotScopeContext.unmask(table[index + 1]);
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (key == null) return null;
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        } else {
+            final Object existing = table[index + 1];
+            delete(index);
+            return SlotScopeContext.unmask(existing);
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (key == null) return false;
+        final int index = indexOf(key);
+        if (index >= 0 && Objects.equal(SlotScopeContext.unmask(table[index + 1]), value)) {
+            delete(index);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        if (key == null) return false;
+        final int index = indexOf(key);
+        if (index >= 0 && Objects.equal(SlotScopeContext.unmask(table[index + 1]), oldValue)) {
+            table[index + 1] = SlotScopeContext.mask(newValue);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public Object replace(Object key, Object value) {
+        if (key == null) return null;
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        } else {
+            final Object existing = table[index + 1];
+            table[index + 1] = SlotScopeContext.mask(value);
+            return SlotScopeContext.unmask(existing);
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (sizes != null) {
+            sizes.record(size);
+        }
+        // keeps the capacity, which allows to reuse this context
+        Arrays.fill(table, null);
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<Object, Object>> entrySet() {
+        return new AbstractSet<Entry<Object, Object>>() {
+
+            @Override
+            public Iterator<Entry<Object, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+        };
+    }
+
+    /**
+     * Iterates the entries of the current table. Removal is not supported.
+     *
+     * @since 2.1
+     */
+    private final class EntryIterator implements Iterator<Entry<Object, Object>> {
+
+        private final Object[] current = table;
+
+        private int index = advance(0);
+
+        private int advance(int from) {
+            int next = from;
+            while (next < current.length && current[next] == null) {
+                next += 2;
+            }
+            return next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < current.length;
+        }
+
+        @Override
+        public Entry<Object, Object> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            final Map.Entry<Object, Object> entry = Maps.immutableEntry(
+                current[index], SlotScopeContext.unmask(current[index + 1])
+            );
+            index = advance(index + 2);
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+/**
+ * A {@link ScopeContextFactory} which creates {@link ThreadConfinedScopeContext}s.
+ * New contexts are pre-sized using the sizes of the previous contexts of
+ * this factory, which is why every scope should use its own factory.
+ * Contexts are wrapped in a {@link SynchronizedScopeContext} once they are shared.
+ *
+ * @since 2.1
+ */
+final class ThreadConfinedScopeContextFactory implements ScopeContextFactory {
+
+    private static final int INITIAL_SIZE = 4;
+
+    private final ScopeContextSizes sizes = new ScopeContextSizes(INITIAL_SIZE);
+
+    @Override
+    public ScopeContext create() {
+        return new ThreadConfinedScopeContext(sizes.expected(), sizes);
+    }
+
+    @Override
+    public ScopeContext share(ScopeContext context) {
+        if (context instanceof ThreadConfinedScopeContext) {
+            return new SynchronizedScopeContext(context);
+        } else {
+            return context;
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+
+/**
+ * Binds {@link ScopeContextFactory} to an implementation which creates contexts
+ * confined to the thread of their unit of work. Such contexts avoid the synchronization
+ * costs of concurrent maps and become thread-safe only when a unit of work is
+ * propagated to other threads using {@link UnitOfWorkExecutors}. Every scope gets
+ * its own factory, which learns the typical size of the contexts of that scope.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class ThreadConfinedScopeContextModule implements Module {
+
+    @Override
+    public void configure(Binder binder) {
+        binder.bind(ScopeContextFactory.class).to(ThreadConfinedScopeContextFactory.class);
+    }
+
+}
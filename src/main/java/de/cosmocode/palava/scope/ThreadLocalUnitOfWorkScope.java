@@ -19,26 +19,82 @@ package de.cosmocode.palava.scope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.inject.Key;
-import com.google.inject.Provider;
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 /**
  * A {@link ThreadLocal} based {@link UnitOfWorkScope} implementation.
  *
+ * <p>
+ *   If {@link ScopeConfig#RECYCLING} is enabled, every thread reuses one context
+ *   and destroys it synchronously, ignoring a bound {@link DestroyExecutor}. Combined with
+ *   {@link ScopeConfig#INDEXED} a unit of work over a warm set of keys does not allocate.
+ * </p>
+ *
  * @author Willi Schoenborn
  */
-final class ThreadLocalUnitOfWorkScope extends AbstractUnitOfWorkScope implements SupplyingScope {
+final class ThreadLocalUnitOfWorkScope extends ContextUnitOfWorkScope {
 
     private static final Logger LOG = LoggerFactory.getLogger(ThreadLocalUnitOfWorkScope.class);
     
     private final ThreadLocal<ScopeContext> context = new ThreadLocal<ScopeContext>();
     
+    private final ThreadLocal<Recycled> recycled = new ThreadLocal<Recycled>();
+    
+    // the handle which opened the unit of work of the current thread, if any
+    private final ThreadLocal<UnitOfWorkHandle> owner = new ThreadLocal<UnitOfWorkHandle>();
+    
+    private boolean recycling;
+    
+    @Inject(optional = true)
+    void setRecycling(@Named(ScopeConfig.RECYCLING) boolean recycling) {
+        this.recycling = recycling;
+    }
+    
     @Override
     public void begin() {
         checkNotActive();
         LOG.trace("Entering {}", this);
-        context.set(new DefaultScopeContext());
+        context.set(recycling ? recycled().context : newContext());
+        LOG.trace("Entered {}", this);
+        fireBegin();
+    }
+    
+    /**
+     * Joins or begins a unit of work using a single lookup of the current context.
+     * Closing the returned handle ends the unit of work without looking it up again.
+     */
+    @Override
+    public UnitOfWorkHandle open() {
+        if (context.get() != null) {
+            return UnitOfWorkScopes.joined();
+        }
+        LOG.trace("Entering {}", this);
+        final UnitOfWorkHandle handle;
+        if (recycling) {
+            final Recycled current = recycled();
+            context.set(current.context);
+            handle = current.handle;
+        } else {
+            context.set(newContext());
+            handle = new Handle();
+        }
+        owner.set(handle);
         LOG.trace("Entered {}", this);
+        fireBegin();
+        return handle;
+    }
+    
+    private Recycled recycled() {
+        final Recycled current = recycled.get();
+        if (current == null) {
+            final Recycled recycledContext = new Recycled(newContext(), new Handle());
+            recycled.set(recycledContext);
+            return recycledContext;
+        } else {
+            return current;
+        }
     }
 
     @Override
@@ -46,31 +102,102 @@ final class ThreadLocalUnitOfWorkScope extends AbstractUnitOfWorkScope implement
         return context.get() != null;
     }
     
-    @Override
-    public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
-        return new ScopingProvider<T>(this, key, unscoped);
-    }
-
     @Override
     public ScopeContext get() {
         return context.get();
     }
     
+    @Override
+    ScopeContext attach(ScopeContext attached) {
+        final ScopeContext previous = context.get();
+        context.set(attached);
+        return previous;
+    }
+    
+    @Override
+    void restore(ScopeContext previous) {
+        if (previous == null) {
+            context.remove();
+        } else {
+            context.set(previous);
+        }
+    }
+    
     @Override
     public void end() {
         checkActive();
+        checkNotAttached();
+        endAllNested();
+        exit(context.get());
+    }
+    
+    private void exit(ScopeContext currentContext) {
         LOG.trace("Exiting {}", this);
+        endPropagation();
         
-        final ScopeContext currentContext = context.get();
-        
-        try {
-            destroy(currentContext);
-        } finally {
-            currentContext.clear();
-            context.remove();
+        if (recycling) {
+            try {
+                recycleContext(currentContext, recycled().errors);
+            } finally {
+                // keeps the thread local entries
+                context.set(null);
+                owner.set(null);
+            }
+        } else {
+            try {
+                destroyContext(currentContext);
+            } finally {
+                context.remove();
+                owner.remove();
+            }
         }
         
         LOG.trace("Successfully exited {}", this);
+        fireEnd();
+    }
+
+    /**
+     * A handle owning the unit of work it opened. Ownership is tracked by identity of
+     * the handle, not of the context, because the context of the current thread may be
+     * replaced, e.g. by a nested unit of work or by {@link #share()}. A recycled handle
+     * is reused by all units of work of its thread, it can't detect being closed
+     * after the next unit of work has been opened.
+     *
+     * @since 2.1
+     */
+    private final class Handle implements UnitOfWorkHandle {
+        
+        @Override
+        public boolean isOwner() {
+            return true;
+        }
+        
+        @Override
+        public void close() {
+            Preconditions.checkState(owner.get() == this,
+                "Unit of work of %s has already been closed", ThreadLocalUnitOfWorkScope.this);
+            endAllNested();
+            exit(context.get());
+        }
+        
+    }
+
+    /**
+     * The context, handle and errors reused by one thread.
+     *
+     * @since 2.1
+     */
+    private static final class Recycled {
+        
+        private final ScopeContext context;
+        private final UnitOfWorkHandle handle;
+        private final DefaultDestroyErrors errors = new DefaultDestroyErrors();
+        
+        Recycled(ScopeContext context, UnitOfWorkHandle handle) {
+            this.context = context;
+            this.handle = handle;
+        }
+        
     }
 
 }
@@ -28,9 +28,10 @@ public final class ThreadLocalUnitOfWorkScopeModule implements Module {
 
     @Override
     public void configure(Binder binder) {
-        final UnitOfWorkScope scope = new ThreadLocalUnitOfWorkScope();
+        final ThreadLocalUnitOfWorkScope scope = new ThreadLocalUnitOfWorkScope();
         binder.bindScope(UnitOfWork.class, scope);
         binder.bind(UnitOfWorkScope.class).toInstance(scope);
+        binder.bind(NestableUnitOfWorkScope.class).toInstance(scope);
     }
 
 }
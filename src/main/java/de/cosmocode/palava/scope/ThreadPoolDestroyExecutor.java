@@ -0,0 +1,143 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * A {@link DestroyExecutor} which uses a bounded queue and a fixed number of
+ * daemon threads. Pending destructions will be drained on {@link #dispose()}.
+ *
+ * @since 2.1
+ */
+final class ThreadPoolDestroyExecutor implements DestroyExecutor, Disposable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ThreadPoolDestroyExecutor.class);
+    
+    private int queueSize = 1024;
+    
+    private int threads = 1;
+    
+    private DestroyBackpressure backpressure = DestroyBackpressure.BLOCK;
+    
+    private long shutdownTimeout = 30;
+    
+    private TimeUnit shutdownTimeoutUnit = TimeUnit.SECONDS;
+    
+    private DestroyErrorHandler handler = LoggingDestroyErrorHandler.INSTANCE;
+    
+    private volatile ThreadPoolExecutor executor;
+    
+    @Inject(optional = true)
+    void setQueueSize(@Named(ScopeConfig.DESTROY_QUEUE_SIZE) int queueSize) {
+        Preconditions.checkArgument(queueSize > 0, "Queue size must be positive");
+        this.queueSize = queueSize;
+    }
+    
+    @Inject(optional = true)
+    void setThreads(@Named(ScopeConfig.DESTROY_THREADS) int threads) {
+        Preconditions.checkArgument(threads > 0, "Threads must be positive");
+        this.threads = threads;
+    }
+    
+    @Inject(optional = true)
+    void setBackpressure(@Named(ScopeConfig.DESTROY_BACKPRESSURE) DestroyBackpressure backpressure) {
+        this.backpressure = Preconditions.checkNotNull(backpressure, "Backpressure");
+    }
+    
+    @Inject(optional = true)
+    void setShutdownTimeout(@Named(ScopeConfig.DESTROY_SHUTDOWN_TIMEOUT) long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+    
+    @Inject(optional = true)
+    void setShutdownTimeoutUnit(@Named(ScopeConfig.DESTROY_SHUTDOWN_TIMEOUT_UNIT) TimeUnit shutdownTimeoutUnit) {
+        this.shutdownTimeoutUnit = Preconditions.checkNotNull(shutdownTimeoutUnit, "ShutdownTimeoutUnit");
+    }
+    
+    @Inject(optional = true)
+    void setHandler(DestroyErrorHandler handler) {
+        this.handler = Preconditions.checkNotNull(handler, "Handler");
+    }
+    
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    LOG.debug("Starting {} thread(s) with a queue size of {}", threads, queueSize);
+                    executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<Runnable>(queueSize), new DestroyThreadFactory("palava-scope-destroy"), backpressure);
+                }
+            }
+        }
+        return executor;
+    }
+    
+    @Override
+    public void execute(final Runnable destruction) {
+        Preconditions.checkNotNull(destruction, "Destruction");
+        getExecutor().execute(new Runnable() {
+            
+            @Override
+            public void run() {
+                try {
+                    destruction.run();
+                /* CHECKSTYLE:OFF */
+                } catch (RuntimeException e) {
+                /* CHECKSTYLE:ON */
+                    handler.handle(e);
+                }
+            }
+            
+        });
+    }
+    
+    @Override
+    public void dispose() throws LifecycleException {
+        final ThreadPoolExecutor current = executor;
+        if (current == null) return;
+        
+        LOG.info("Draining {} pending destruction(s)", current.getQueue().size());
+        current.shutdown();
+        
+        try {
+            if (current.awaitTermination(shutdownTimeout, shutdownTimeoutUnit)) {
+                LOG.info("All pending destructions completed");
+            } else {
+                LOG.warn("{} destruction(s) still pending after {} {}", new Object[] {
+                    current.getQueue().size(), shutdownTimeout, shutdownTimeoutUnit
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LifecycleException(e);
+        }
+    }
+    
+}
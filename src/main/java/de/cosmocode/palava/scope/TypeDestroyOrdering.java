@@ -0,0 +1,72 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A {@link DestroyOrdering} based on types. Instances of the first type
+ * are destroyed first, then the ones of the second type and so on. Instances
+ * matching none of the types are destroyed last.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class TypeDestroyOrdering implements DestroyOrdering {
+
+    private final List<Class<?>> types;
+    
+    private TypeDestroyOrdering(List<Class<?>> types) {
+        this.types = types;
+    }
+    
+    @Override
+    public int groupOf(Object object) {
+        for (int group = 0; group < types.size(); group++) {
+            if (types.get(group).isInstance(object)) {
+                return group;
+            }
+        }
+        return types.size();
+    }
+    
+    /**
+     * Creates an ordering which destroys instances in the order of the given types,
+     * e.g. {@code TypeDestroyOrdering.of(Session.class, Connection.class)} closes
+     * sessions before connections.
+     *
+     * @since 2.1
+     * @param types the types in destruction order
+     * @return a new ordering
+     * @throws NullPointerException if types is or contains null
+     */
+    public static DestroyOrdering of(Class<?>... types) {
+        Preconditions.checkNotNull(types, "Types");
+        return new TypeDestroyOrdering(ImmutableList.copyOf(Arrays.asList(types)));
+    }
+    
+    @Override
+    public String toString() {
+        return "TypeDestroyOrdering.of(" + types + ")";
+    }
+    
+}
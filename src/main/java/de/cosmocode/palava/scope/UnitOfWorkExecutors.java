@@ -0,0 +1,75 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.ExecutorService;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.inject.OutOfScopeException;
+
+/**
+ * Utility class for executors running tasks on behalf of a unit of work.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class UnitOfWorkExecutors {
+
+    private UnitOfWorkExecutors() {
+        
+    }
+    
+    /**
+     * Decorates the given executor service so that every task runs inside the unit of work
+     * which was active in the submitting thread. The context is captured when the task is
+     * submitted and attached to the worker thread for the duration of the task. Tasks submitted
+     * outside of a unit of work run unchanged.
+     * 
+     * <p>
+     *   The originating unit of work keeps the ownership of its scoped instances, i.e.
+     *   they will be destroyed when the submitting thread ends the unit, not when a task
+     *   completes. Ending the originating unit of work waits for all running tasks, tasks
+     *   starting afterwards run outside of it and fail with an {@link OutOfScopeException}
+     *   when accessing scoped instances. Tasks can't end the propagated unit of work.
+     *   Scoped instances will be accessed concurrently, consider enabling
+     *   {@link ScopeConfig#SINGLE_FLIGHT single flight} creation.
+     * </p>
+     * 
+     * <p>
+     *   Scopes which are visible to all threads anyway, e.g. the one bound by the
+     *   {@link SingletonUnitOfWorkScopeModule}, don't need propagation. In this case
+     *   the given executor will be returned as is.
+     * </p>
+     *
+     * @since 2.1
+     * @param executor the backing executor
+     * @param scope the scope to propagate
+     * @return an executor service propagating the current unit of work of the given scope
+     * @throws NullPointerException if executor or scope is null
+     */
+    public static ExecutorService propagating(ExecutorService executor, UnitOfWorkScope scope) {
+        Preconditions.checkNotNull(executor, "Executor");
+        Preconditions.checkNotNull(scope, "Scope");
+        if (scope instanceof ContextUnitOfWorkScope) {
+            return new PropagatingExecutorService(executor, ContextUnitOfWorkScope.class.cast(scope));
+        } else {
+            return executor;
+        }
+    }
+    
+}
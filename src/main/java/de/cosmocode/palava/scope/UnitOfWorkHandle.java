@@ -0,0 +1,47 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A token representing the participation in a unit of work, obtained by
+ * {@link UnitOfWorkScopes#open(UnitOfWorkScope)}. Closing the handle ends the
+ * unit of work if it was started by the corresponding open call.
+ *
+ * @since 2.1
+ */
+@Beta
+public interface UnitOfWorkHandle {
+
+    /**
+     * Checks whether this handle started the unit of work, i.e. closing it ends the unit of work.
+     *
+     * @since 2.1
+     * @return true if this handle owns the unit of work, false if it joined an active one
+     */
+    boolean isOwner();
+
+    /**
+     * Closes this handle, which ends the unit of work if this handle owns it.
+     *
+     * @since 2.1
+     * @throws IllegalStateException if the unit of work of this handle has already ended
+     */
+    void close();
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.Callable;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+
+/**
+ * Static utility methods to run code inside a {@link UnitOfWorkScope}. All of them join an
+ * active unit of work or begin a new one otherwise, which will be ended afterwards. Scopes
+ * of this package implement them with as few lookups of the current unit of work as possible.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class UnitOfWorkScopes {
+
+    private UnitOfWorkScopes() {
+
+    }
+
+    /**
+     * Joins the active unit of work of the given scope or begins a new one.
+     *
+     * @since 2.1
+     * @param scope the scope
+     * @return a handle which has to be closed afterwards
+     * @throws NullPointerException if scope is null
+     */
+    public static UnitOfWorkHandle open(UnitOfWorkScope scope) {
+        Preconditions.checkNotNull(scope, "Scope");
+        if (scope instanceof AbstractUnitOfWorkScope) {
+            return AbstractUnitOfWorkScope.class.cast(scope).open();
+        } else {
+            return openGeneric(scope);
+        }
+    }
+
+    /**
+     * Opens the given scope using {@link UnitOfWorkScope#isActive()} and {@link UnitOfWorkScope#begin()}.
+     *
+     * @param scope the scope
+     * @return a new handle
+     */
+    static UnitOfWorkHandle openGeneric(UnitOfWorkScope scope) {
+        if (scope.isActive()) {
+            return Joined.INSTANCE;
+        } else {
+            scope.begin();
+            return new Owner(scope);
+        }
+    }
+
+    /**
+     * Provides the handle used to join an active unit of work.
+     *
+     * @return a handle which does nothing on close
+     */
+    static UnitOfWorkHandle joined() {
+        return Joined.INSTANCE;
+    }
+
+    /**
+     * Calls the given body inside a unit of work of the given scope.
+     *
+     * @since 2.1
+     * @param <V> the generic result type
+     * @param scope the scope
+     * @param body the body
+     * @return the result of the body
+     * @throws Exception if the body failed
+     * @throws NullPointerException if scope or body is null
+     */
+    public static <V> V call(UnitOfWorkScope scope, Callable<V> body) throws Exception {
+        Preconditions.checkNotNull(body, "Body");
+        final UnitOfWorkHandle handle = open(scope);
+        try {
+            return body.call();
+        } finally {
+            handle.close();
+        }
+    }
+
+    /**
+     * Runs the given body inside a unit of work of the given scope.
+     *
+     * @since 2.1
+     * @param scope the scope
+     * @param body the body
+     * @throws NullPointerException if scope or body is null
+     */
+    public static void run(UnitOfWorkScope scope, Runnable body) {
+        Preconditions.checkNotNull(body, "Body");
+        final UnitOfWorkHandle handle = open(scope);
+        try {
+            body.run();
+        } finally {
+            handle.close();
+        }
+    }
+
+    /**
+     * A handle of a joined unit of work.
+     *
+     * @since 2.1
+     */
+    private enum Joined implements UnitOfWorkHandle {
+
+        INSTANCE;
+
+        @Override
+        public boolean isOwner() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // the owner ends the unit of work
+        }
+
+    }
+
+    /**
+     * A handle which ends its unit of work using {@link UnitOfWorkScope#end()}.
+     *
+     * @since 2.1
+     */
+    private static final class Owner implements UnitOfWorkHandle {
+
+        private final UnitOfWorkScope scope;
+
+        Owner(UnitOfWorkScope scope) {
+            this.scope = scope;
+        }
+
+        @Override
+        public boolean isOwner() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            scope.end();
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Scope;
+
+/**
+ * Unit of work statistics of a single scope, see {@link ScopeStatistics}.
+ *
+ * @since 2.1
+ */
+@Beta
+public final class UnitStatistics {
+
+    private final Scope scope;
+
+    private final LatencyHistogram duration = new LatencyHistogram();
+
+    private final LatencyHistogram destruction = new LatencyHistogram();
+
+    // start of the current unit of work per thread, 0 if none
+    private final ThreadLocal<long[]> started = new ThreadLocal<long[]>() {
+
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+
+    };
+
+    UnitStatistics(Scope scope) {
+        this.scope = scope;
+    }
+
+    void begin() {
+        started.get()[0] = System.nanoTime();
+    }
+
+    void end() {
+        final long[] start = started.get();
+        if (start[0] != 0L) {
+            duration.record(System.nanoTime() - start[0]);
+            start[0] = 0L;
+        }
+    }
+
+    void destroyed(long nanos) {
+        destruction.record(nanos);
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Provides the durations from begin to end of the units of work. Units of work
+     * which ended on a different thread than they began, e.g. in a
+     * {@link SharedUnitOfWorkScope}, are not recorded.
+     *
+     * @since 2.1
+     * @return a snapshot of the unit of work durations
+     */
+    public LatencyHistogram.Snapshot getDuration() {
+        return duration.snapshot();
+    }
+
+    /**
+     * Provides the durations of the destruction of single scoped instances.
+     *
+     * @since 2.1
+     * @return a snapshot of the destruction durations
+     */
+    public LatencyHistogram.Snapshot getDestruction() {
+        return destruction.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: duration=[%s], destruction=[%s]", scope, duration, destruction);
+    }
+
+}
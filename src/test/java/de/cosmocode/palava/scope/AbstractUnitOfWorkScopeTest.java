@@ -43,6 +43,19 @@ public abstract class AbstractUnitOfWorkScopeTest implements UnitProvider<Inject
         Assert.assertFalse(unit.isActive());
     }
 
+    /**
+     * Tests that a scoped instance is reused within the same unit of work.
+     */
+    @Test
+    public void scoped() {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        Assert.assertSame(service, injector.getInstance(DestroyableService.class));
+        unit.end();
+    }
+
     /**
      * Tests {@link DestroyStrategy}.
      */
@@ -56,5 +69,26 @@ public abstract class AbstractUnitOfWorkScopeTest implements UnitProvider<Inject
         unit.end();
         Assert.assertTrue(service.isDestroyed());
     }
+
+    /**
+     * Tests {@link UnitOfWorkScopes#open(UnitOfWorkScope)}.
+     */
+    @Test
+    public void handle() {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        final UnitOfWorkHandle handle = UnitOfWorkScopes.open(unit);
+        Assert.assertTrue(handle.isOwner());
+        Assert.assertTrue(unit.isActive());
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        
+        UnitOfWorkScopes.open(unit).close();
+        Assert.assertTrue(unit.isActive());
+        Assert.assertFalse(service.isDestroyed());
+        
+        handle.close();
+        Assert.assertFalse(unit.isActive());
+        Assert.assertTrue(service.isDestroyed());
+    }
     
 }
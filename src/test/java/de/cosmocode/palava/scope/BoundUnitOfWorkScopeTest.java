@@ -0,0 +1,121 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.Callable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import de.cosmocode.junit.UnitProvider;
+import de.cosmocode.palava.core.aop.ReinjectableAspectModule;
+
+/**
+ * Tests {@link BoundUnitOfWorkScope}.
+ *
+ * @since 2.1
+ */
+public final class BoundUnitOfWorkScopeTest implements UnitProvider<Injector> {
+
+    @Override
+    public Injector unit() {
+        return Guice.createInjector(
+            new BoundUnitOfWorkScopeModule(),
+            new ReinjectableAspectModule(),
+            new DestroyStrategyModule()
+        );
+    }
+
+    /**
+     * Tests {@link BoundUnitOfWorkScope#call(Callable)}.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void call() throws Exception {
+        final Injector injector = unit();
+        final BoundUnitOfWorkScope unit = injector.getInstance(BoundUnitOfWorkScope.class);
+        Assert.assertFalse(unit.isActive());
+        final DestroyableService service = unit.call(new Callable<DestroyableService>() {
+            
+            @Override
+            public DestroyableService call() {
+                Assert.assertTrue(unit.isActive());
+                final DestroyableService service = injector.getInstance(DestroyableService.class);
+                Assert.assertSame(service, injector.getInstance(DestroyableService.class));
+                Assert.assertFalse(service.isDestroyed());
+                return service;
+            }
+            
+        });
+        Assert.assertFalse(unit.isActive());
+        Assert.assertTrue(service.isDestroyed());
+    }
+
+    /**
+     * Tests {@link BoundUnitOfWorkScope#begin()} and {@link BoundUnitOfWorkScope#end()}.
+     */
+    @Test
+    public void begin() {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        Assert.assertTrue(unit.isActive());
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        Assert.assertSame(service, injector.getInstance(DestroyableService.class));
+        unit.end();
+        Assert.assertFalse(unit.isActive());
+        Assert.assertTrue(service.isDestroyed());
+    }
+
+    /**
+     * Tests {@link UnitOfWorkScopes#open(UnitOfWorkScope)}, which is used by the aspect.
+     */
+    @Test
+    public void open() {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        final UnitOfWorkHandle handle = UnitOfWorkScopes.open(unit);
+        Assert.assertTrue(handle.isOwner());
+        Assert.assertTrue(unit.isActive());
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        
+        final UnitOfWorkHandle joined = UnitOfWorkScopes.open(unit);
+        Assert.assertFalse(joined.isOwner());
+        joined.close();
+        Assert.assertTrue(unit.isActive());
+        Assert.assertFalse(service.isDestroyed());
+        
+        handle.close();
+        Assert.assertFalse(unit.isActive());
+        Assert.assertTrue(service.isDestroyed());
+    }
+
+    /**
+     * Tests that closing a handle twice fails.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void closeTwice() {
+        final UnitOfWorkHandle handle = UnitOfWorkScopes.open(unit().getInstance(UnitOfWorkScope.class));
+        handle.close();
+        handle.close();
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Tests {@link CacheScope}.
+ *
+ * @since 2.1
+ */
+public final class CacheScopeTest {
+
+    private Injector unit() {
+        return Guice.createInjector(
+            new CacheScopeModule(),
+            new DestroyStrategyModule(),
+            new AbstractModule() {
+
+                @Override
+                protected void configure() {
+                    bind(DestroyableService.class).in(Cached.class);
+                }
+
+            }
+        );
+    }
+
+    /**
+     * Tests that cached instances are shared without a unit of work
+     * and destroyed when the cache is invalidated.
+     */
+    @Test
+    public void invalidateAll() {
+        final Injector injector = unit();
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        Assert.assertSame(service, injector.getInstance(DestroyableService.class));
+
+        injector.getInstance(CacheScope.class).invalidateAll();
+        Assert.assertTrue(service.isDestroyed());
+
+        final DestroyableService recreated = injector.getInstance(DestroyableService.class);
+        Assert.assertNotSame(service, recreated);
+        Assert.assertFalse(recreated.isDestroyed());
+    }
+
+    /**
+     * Tests that evicted instances are destroyed.
+     */
+    @Test
+    public void eviction() {
+        final CacheScope scope = unit().getInstance(CacheScope.class);
+        final DestroyableService service = new DestroyableService();
+        scope.onEviction(DestroyableService.class, service);
+        Assert.assertTrue(service.isDestroyed());
+    }
+
+}
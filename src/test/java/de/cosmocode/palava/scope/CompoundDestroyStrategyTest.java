@@ -0,0 +1,172 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests {@link CompoundDestroyStrategy} and its dispatch of {@link SelectiveDestroyStrategy}s.
+ *
+ * @since 2.1
+ */
+public final class CompoundDestroyStrategyTest {
+    
+    private final List<String> destroyed = Lists.newArrayList();
+    
+    /**
+     * A strategy which records its name for every destroyed instance.
+     */
+    private class RecordingStrategy implements DestroyStrategy {
+        
+        private final String name;
+        
+        public RecordingStrategy(String name) {
+            this.name = name;
+        }
+        
+        @Override
+        public void destroy(Object instance, DestroyErrors errors) {
+            destroyed.add(name);
+        }
+        
+    }
+    
+    /**
+     * A selective strategy which applies to subtypes of a given type and counts its lookups.
+     */
+    private final class TypeStrategy extends RecordingStrategy implements SelectiveDestroyStrategy {
+        
+        private final Class<?> applicable;
+        
+        private final Map<Class<?>, Integer> lookups = Maps.newHashMap();
+        
+        public TypeStrategy(String name, Class<?> applicable) {
+            super(name);
+            this.applicable = applicable;
+        }
+        
+        @Override
+        public boolean appliesTo(Class<?> type) {
+            final Integer count = lookups.get(type);
+            lookups.put(type, count == null ? 1 : count + 1);
+            return applicable.isAssignableFrom(type);
+        }
+        
+    }
+    
+    private static CompoundDestroyStrategy of(DestroyStrategy... strategies) {
+        final Set<DestroyStrategy> set = Sets.newLinkedHashSet();
+        for (DestroyStrategy strategy : strategies) {
+            set.add(strategy);
+        }
+        return new CompoundDestroyStrategy(set);
+    }
+    
+    /**
+     * Tests that selective strategies are only applied to the types they apply to.
+     */
+    @Test
+    public void dispatch() {
+        final CompoundDestroyStrategy unit = of(
+            new TypeStrategy("string", String.class),
+            new TypeStrategy("number", Number.class)
+        );
+        
+        unit.destroy("string", new DefaultDestroyErrors());
+        Assert.assertEquals(ImmutableList.of("string"), destroyed);
+        
+        destroyed.clear();
+        unit.destroy(Integer.valueOf(1), new DefaultDestroyErrors());
+        Assert.assertEquals(ImmutableList.of("number"), destroyed);
+        
+        destroyed.clear();
+        unit.destroy(new Object(), new DefaultDestroyErrors());
+        Assert.assertTrue(destroyed.isEmpty());
+        
+        unit.destroy(null, new DefaultDestroyErrors());
+        Assert.assertTrue(destroyed.isEmpty());
+    }
+    
+    /**
+     * Tests that the applicable strategies are resolved once per type.
+     */
+    @Test
+    public void cached() {
+        final TypeStrategy strategy = new TypeStrategy("string", String.class);
+        final CompoundDestroyStrategy unit = of(strategy);
+        
+        for (int i = 0; i < 3; i++) {
+            unit.destroy("string" + i, new DefaultDestroyErrors());
+            unit.destroy(Integer.valueOf(i), new DefaultDestroyErrors());
+        }
+        Assert.assertTrue(unit.appliesTo(String.class));
+        Assert.assertFalse(unit.appliesTo(Integer.class));
+        
+        Assert.assertEquals(3, destroyed.size());
+        Assert.assertEquals(Integer.valueOf(1), strategy.lookups.get(String.class));
+        Assert.assertEquals(Integer.valueOf(1), strategy.lookups.get(Integer.class));
+    }
+    
+    /**
+     * Tests that applicable strategies keep the order of the bound strategies.
+     */
+    @Test
+    public void order() {
+        final CompoundDestroyStrategy unit = of(
+            new RecordingStrategy("first"),
+            new TypeStrategy("second", String.class),
+            new TypeStrategy("skipped", Number.class),
+            new RecordingStrategy("third"),
+            new TypeStrategy("fourth", CharSequence.class)
+        );
+        
+        unit.destroy("string", new DefaultDestroyErrors());
+        unit.destroy("string", new DefaultDestroyErrors());
+        Assert.assertEquals(ImmutableList.of(
+            "first", "second", "third", "fourth", 
+            "first", "second", "third", "fourth"
+        ), destroyed);
+    }
+    
+    /**
+     * Tests that non-selective strategies apply to every type.
+     */
+    @Test
+    public void nonSelective() {
+        final CompoundDestroyStrategy unit = of(new RecordingStrategy("all"));
+        Assert.assertTrue(unit.appliesTo(Object.class));
+        Assert.assertTrue(unit.appliesTo(String.class));
+        
+        unit.destroy(new Object(), new DefaultDestroyErrors());
+        unit.destroy("string", new DefaultDestroyErrors());
+        Assert.assertEquals(ImmutableList.of("all", "all"), destroyed);
+        
+        Assert.assertFalse(of(new TypeStrategy("string", String.class)).appliesTo(Object.class));
+        Assert.assertFalse(of().appliesTo(Object.class));
+    }
+    
+}
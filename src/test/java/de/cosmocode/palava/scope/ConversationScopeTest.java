@@ -0,0 +1,206 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.name.Names;
+
+/**
+ * Tests {@link ConversationScope}.
+ *
+ * @since 2.1
+ */
+public final class ConversationScopeTest {
+
+    /**
+     * A serializable conversation state.
+     */
+    static final class Wizard implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private int step;
+
+    }
+
+    /**
+     * A serializable conversation state which has to be destroyed.
+     */
+    static final class Connection implements Serializable, Destroyable {
+
+        private static final long serialVersionUID = 1L;
+
+        private boolean destroyed;
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+
+    }
+
+    private Injector unit(long idleThreshold) {
+        return unit(idleThreshold, 8L, TimeUnit.HOURS);
+    }
+
+    private Injector unit(final long idleThreshold, final long timeout, final TimeUnit timeoutUnit) {
+        return Guice.createInjector(
+            new ConversationScopeModule(),
+            new DestroyStrategyModule(),
+            new AbstractModule() {
+
+                @Override
+                protected void configure() {
+                    bind(Wizard.class).in(ConversationScoped.class);
+                    bind(DestroyableService.class).in(ConversationScoped.class);
+                    bind(Connection.class).in(ConversationScoped.class);
+                    bindConstant().annotatedWith(Names.named(ScopeConfig.CONVERSATION_IDLE_THRESHOLD)).to(idleThreshold);
+                    bindConstant().annotatedWith(Names.named(ScopeConfig.CONVERSATION_TIMEOUT)).to(timeout);
+                    bindConstant().annotatedWith(Names.named(ScopeConfig.CONVERSATION_TIMEOUT_UNIT)).to(timeoutUnit);
+                }
+
+            }
+        );
+    }
+
+    /**
+     * Tests that conversations survive suspension.
+     */
+    @Test
+    public void resume() {
+        final Injector injector = unit(30L);
+        final ConversationScope scope = injector.getInstance(ConversationScope.class);
+
+        scope.resume("first");
+        final Wizard wizard = injector.getInstance(Wizard.class);
+        scope.suspend();
+
+        scope.resume("second");
+        Assert.assertNotSame(wizard, injector.getInstance(Wizard.class));
+        scope.suspend();
+
+        scope.resume("first");
+        Assert.assertSame(wizard, injector.getInstance(Wizard.class));
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        scope.end();
+        Assert.assertTrue(service.isDestroyed());
+        Assert.assertFalse(scope.isActive());
+    }
+
+    /**
+     * Tests that idle conversations are passivated and restored lazily.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void passivation() throws Exception {
+        final Injector injector = unit(0L);
+        final ConversationScope scope = injector.getInstance(ConversationScope.class);
+
+        scope.resume("conversation");
+        final Wizard wizard = injector.getInstance(Wizard.class);
+        wizard.step = 3;
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        final Connection connection = injector.getInstance(Connection.class);
+        scope.suspend();
+
+        scope.passivateIdle();
+        Assert.assertTrue(service.isDestroyed());
+        Assert.assertTrue(connection.destroyed);
+
+        scope.resume("conversation");
+        final Wizard restored = injector.getInstance(Wizard.class);
+        Assert.assertNotSame(wizard, restored);
+        Assert.assertEquals(3, restored.step);
+        Assert.assertSame(restored, injector.getInstance(Wizard.class));
+        Assert.assertNotSame(service, injector.getInstance(DestroyableService.class));
+        Assert.assertNotSame(connection, injector.getInstance(Connection.class));
+        scope.end();
+
+        scope.dispose();
+    }
+
+    /**
+     * Tests that abandoned conversations get ended.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void expiry() throws Exception {
+        final Injector injector = unit(30L, 1L, TimeUnit.NANOSECONDS);
+        final ConversationScope scope = injector.getInstance(ConversationScope.class);
+
+        scope.resume("abandoned");
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        scope.expireIdle();
+        Assert.assertFalse(service.isDestroyed());
+        scope.suspend();
+
+        scope.expireIdle();
+        Assert.assertTrue(service.isDestroyed());
+
+        scope.resume("abandoned");
+        Assert.assertNotSame(service, injector.getInstance(DestroyableService.class));
+        scope.suspend();
+        scope.dispose();
+    }
+
+    /**
+     * Tests that ending a conversation destroys its instances only after all participants left.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void participants() throws Exception {
+        final Injector injector = unit(30L);
+        final ConversationScope scope = injector.getInstance(ConversationScope.class);
+
+        scope.resume("shared");
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+
+        final Thread participant = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                scope.resume("shared");
+                scope.end();
+            }
+
+        });
+        participant.start();
+        participant.join();
+
+        Assert.assertFalse(service.isDestroyed());
+        Assert.assertSame(service, injector.getInstance(DestroyableService.class));
+        scope.suspend();
+        Assert.assertTrue(service.isDestroyed());
+
+        scope.resume("shared");
+        Assert.assertNotSame(service, injector.getInstance(DestroyableService.class));
+        scope.end();
+        scope.dispose();
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.OutOfScopeException;
+
+/**
+ * Tests {@link Lazy} bindings.
+ *
+ * @since 2.1
+ */
+public final class LazyTest {
+
+    private static final AtomicInteger CREATED = new AtomicInteger();
+
+    private static final AtomicInteger DESTROYED = new AtomicInteger();
+
+    /**
+     * A lazily created service.
+     */
+    @Lazy
+    public interface Expensive {
+
+        int work();
+
+    }
+
+    /**
+     * Implementation of {@link Expensive}.
+     */
+    static final class DefaultExpensive implements Expensive, Destroyable {
+
+        private int calls;
+
+        DefaultExpensive() {
+            CREATED.incrementAndGet();
+        }
+
+        @Override
+        public int work() {
+            return ++calls;
+        }
+
+        @Override
+        public void destroy() {
+            DESTROYED.incrementAndGet();
+        }
+
+    }
+
+    private static Injector unit() {
+        return Guice.createInjector(
+            new ThreadLocalUnitOfWorkScopeModule(),
+            new DestroyStrategyModule(),
+            new AbstractModule() {
+
+                @Override
+                protected void configure() {
+                    bind(Expensive.class).to(DefaultExpensive.class).in(UnitOfWork.class);
+                }
+
+            }
+        );
+    }
+
+    /**
+     * Tests that unused proxies neither create nor destroy instances.
+     */
+    @Test
+    public void lazy() {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        final LazyCounter counter = LazyProxies.getCounters(unit).get(Key.get(Expensive.class));
+        final int created = CREATED.get();
+        final int destroyed = DESTROYED.get();
+        final long proxies = counter.getProxies();
+        final long avoided = counter.getAvoided();
+
+        unit.begin();
+        final Expensive unused = injector.getInstance(Expensive.class);
+        Assert.assertSame(unused, injector.getInstance(Expensive.class));
+        Assert.assertEquals(unused, unused);
+        Assert.assertNotNull(unused.toString());
+        unit.end();
+        Assert.assertEquals(created, CREATED.get());
+        Assert.assertEquals(destroyed, DESTROYED.get());
+
+        unit.begin();
+        final Expensive used = injector.getInstance(Expensive.class);
+        Assert.assertNotSame(unused, used);
+        Assert.assertEquals(1, used.work());
+        Assert.assertEquals(2, used.work());
+        Assert.assertEquals(created + 1, CREATED.get());
+        unit.end();
+        Assert.assertEquals(destroyed + 1, DESTROYED.get());
+
+        Assert.assertEquals(proxies + 2, counter.getProxies());
+        Assert.assertEquals(avoided + 1, counter.getAvoided());
+        
+        // counters are not shared between injectors
+        final UnitOfWorkScope other = unit().getInstance(UnitOfWorkScope.class);
+        Assert.assertEquals(0L, LazyProxies.getCounters(other).get(Key.get(Expensive.class)).getProxies());
+    }
+
+    /**
+     * Tests that proxies can't be used after their unit of work ended.
+     */
+    @Test
+    public void outOfScope() {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        final int created = CREATED.get();
+
+        unit.begin();
+        final Expensive unused = injector.getInstance(Expensive.class);
+        unit.end();
+
+        unit.begin();
+        final Expensive used = injector.getInstance(Expensive.class);
+        used.work();
+        unit.end();
+
+        try {
+            unused.work();
+            Assert.fail("Expected OutOfScopeException");
+        } catch (OutOfScopeException e) {
+            Assert.assertEquals(created + 1, CREATED.get());
+        }
+        try {
+            used.work();
+            Assert.fail("Expected OutOfScopeException");
+        } catch (OutOfScopeException e) {
+            Assert.assertEquals(created + 1, CREATED.get());
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+import de.cosmocode.junit.UnitProvider;
+
+/**
+ * Tests {@link LoggingScopeListener}.
+ *
+ * @since 2.1
+ */
+public final class LoggingScopeListenerTest implements UnitProvider<LoggingScopeListener> {
+
+    @Override
+    public LoggingScopeListener unit() {
+        return new LoggingScopeListener();
+    }
+
+    /**
+     * Tests that the listener is enabled exactly if its logger reports slow events.
+     */
+    @Test
+    public void enabled() {
+        Assert.assertEquals(LoggerFactory.getLogger(LoggingScopeListener.class).isInfoEnabled(), unit().isEnabled());
+    }
+
+    /**
+     * Tests that all events are accepted, including null instances and failures.
+     */
+    @Test
+    public void events() {
+        final LoggingScopeListener unit = unit();
+        unit.setThreshold(0L);
+        final SingletonUnitOfWorkScope scope = new SingletonUnitOfWorkScope();
+        unit.onBegin(scope);
+        unit.onProvision(scope, Key.get(Object.class), false, 1L);
+        unit.onProvision(scope, Key.get(Object.class), true, 0L);
+        unit.onDestroy(scope, new Object(), 1L, null);
+        unit.onDestroy(scope, new Object(), 1L, new IllegalStateException());
+        unit.onDestroy(scope, null, 0L, null);
+        unit.onEnd(scope);
+    }
+
+    /**
+     * Tests that the configured threshold is used.
+     */
+    @Test
+    public void threshold() {
+        final LoggingScopeListener unit = unit();
+        unit.setThreshold(5L);
+        unit.setThresholdUnit(TimeUnit.SECONDS);
+        Assert.assertEquals("LoggingScopeListener(threshold=5 SECONDS)", unit.toString());
+    }
+
+    /**
+     * Tests that a negative threshold is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeThreshold() {
+        unit().setThreshold(-1L);
+    }
+
+    /**
+     * Tests that a unit of work observed by the listener works regardless of the log level.
+     */
+    @Test
+    public void module() {
+        final Injector injector = Guice.createInjector(
+            new ThreadLocalUnitOfWorkScopeModule(),
+            new DestroyStrategyModule(),
+            new LoggingScopeListenerModule(),
+            new AbstractModule() {
+
+                @Override
+                protected void configure() {
+                    bindConstant().annotatedWith(Names.named(ScopeConfig.EVENTS_THRESHOLD)).to(0L);
+                }
+
+            }
+        );
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        Assert.assertSame(service, injector.getInstance(DestroyableService.class));
+        unit.end();
+        Assert.assertTrue(service.isDestroyed());
+    }
+
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import de.cosmocode.junit.UnitProvider;
+
+/**
+ * Tests {@link ParallelDestroyer}.
+ *
+ * @since 2.1
+ */
+public final class ParallelDestroyerTest implements UnitProvider<ParallelDestroyer> {
+
+    @Override
+    public ParallelDestroyer unit() {
+        final ParallelDestroyer unit = new ParallelDestroyer();
+        unit.setParallelism(4);
+        unit.setOrdering(TypeDestroyOrdering.of(String.class));
+        return unit;
+    }
+    
+    private static List<Object> objects(int strings, int integers) {
+        final List<Object> objects = Lists.newArrayList();
+        for (int i = 0; i < integers; i++) {
+            objects.add(Integer.valueOf(i));
+        }
+        for (int i = 0; i < strings; i++) {
+            objects.add("string" + i);
+        }
+        return objects;
+    }
+    
+    private static void assertOrdered(List<Object> destroyed, int strings) {
+        for (int i = 0; i < destroyed.size(); i++) {
+            Assert.assertEquals(i < strings, destroyed.get(i) instanceof String);
+        }
+    }
+    
+    /**
+     * A strategy which records destroyed objects.
+     */
+    private static final class RecordingStrategy implements DestroyStrategy {
+        
+        private final List<Object> destroyed = Collections.synchronizedList(Lists.newArrayList());
+        
+        @Override
+        public void destroy(Object object, DestroyErrors errors) {
+            destroyed.add(object);
+        }
+        
+    }
+    
+    /**
+     * Errors which record failures.
+     */
+    private static final class RecordingErrors implements DestroyErrors {
+        
+        private final List<Object> failed = Lists.newArrayList();
+        
+        private final List<Exception> causes = Lists.newArrayList();
+        
+        @Override
+        public void destroyError(Object object, Exception cause) {
+            failed.add(object);
+            causes.add(cause);
+        }
+        
+        @Override
+        public void throwIfNecessary() {
+            
+        }
+        
+    }
+
+    /**
+     * Tests that the ordering is applied below the parallel threshold.
+     */
+    @Test
+    public void orderingInline() {
+        final ParallelDestroyer unit = unit();
+        final RecordingStrategy strategy = new RecordingStrategy();
+        unit.destroy(objects(5, 5), strategy, new DefaultDestroyErrors());
+        Assert.assertEquals(10, strategy.destroyed.size());
+        assertOrdered(strategy.destroyed, 5);
+    }
+
+    /**
+     * Tests that the ordering is applied to parallel destruction.
+     */
+    @Test
+    public void orderingParallel() {
+        final ParallelDestroyer unit = unit();
+        unit.setThreshold(0);
+        final RecordingStrategy strategy = new RecordingStrategy();
+        try {
+            unit.destroy(objects(50, 50), strategy, new DefaultDestroyErrors());
+        } finally {
+            unit.dispose();
+        }
+        Assert.assertEquals(100, strategy.destroyed.size());
+        assertOrdered(strategy.destroyed, 50);
+    }
+
+    /**
+     * Tests that failures of parallel destructions are collected by the errors of the caller.
+     */
+    @Test
+    public void errors() {
+        final ParallelDestroyer unit = unit();
+        unit.setThreshold(0);
+        final RecordingErrors errors = new RecordingErrors();
+        try {
+            unit.destroy(objects(10, 10), new DestroyStrategy() {
+                
+                @Override
+                public void destroy(Object object, DestroyErrors destroyErrors) {
+                    if (object instanceof String) {
+                        destroyErrors.destroyError(object, new IllegalStateException());
+                    } else {
+                        throw new IllegalArgumentException();
+                    }
+                }
+                
+            }, errors);
+        } finally {
+            unit.dispose();
+        }
+        Assert.assertEquals(20, errors.failed.size());
+        for (int i = 0; i < errors.failed.size(); i++) {
+            final Class<?> expected = errors.failed.get(i) instanceof String ? 
+                IllegalStateException.class : IllegalArgumentException.class;
+            Assert.assertSame(expected, errors.causes.get(i).getClass());
+        }
+    }
+
+    /**
+     * Tests that a destruction which ignores interrupts is bounded by its own timeout,
+     * that all remaining instances and groups are still destroyed and that the blocked thread
+     * is compensated.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void timeout() throws InterruptedException {
+        final ParallelDestroyer unit = unit();
+        unit.setParallelism(1);
+        unit.setThreshold(0);
+        unit.setTimeout(100);
+        unit.setTimeoutUnit(TimeUnit.MILLISECONDS);
+        final CountDownLatch release = new CountDownLatch(1);
+        final String hanging = "hanging";
+        final List<Object> destroyed = Collections.synchronizedList(Lists.newArrayList());
+        final DestroyStrategy strategy = new DestroyStrategy() {
+            
+            @Override
+            public void destroy(Object object, DestroyErrors errors) {
+                if (object != hanging) {
+                    destroyed.add(object);
+                    return;
+                }
+                boolean interrupted = false;
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            
+        };
+        
+        try {
+            final List<Object> objects = Lists.newArrayList();
+            objects.add(hanging);
+            objects.addAll(objects(4, 5));
+            final RecordingErrors errors = new RecordingErrors();
+            final long start = System.nanoTime();
+            unit.destroy(objects, strategy, errors);
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            
+            Assert.assertEquals(1, errors.failed.size());
+            Assert.assertSame(hanging, errors.failed.get(0));
+            Assert.assertTrue(errors.causes.get(0) instanceof TimeoutException);
+            Assert.assertEquals(9, destroyed.size());
+            assertOrdered(destroyed, 4);
+            
+            final RecordingStrategy recording = new RecordingStrategy();
+            final RecordingErrors none = new RecordingErrors();
+            unit.destroy(objects(5, 5), recording, none);
+            Assert.assertEquals(10, recording.destroyed.size());
+            Assert.assertTrue(none.failed.isEmpty());
+        } finally {
+            release.countDown();
+            unit.dispose();
+        }
+    }
+
+}
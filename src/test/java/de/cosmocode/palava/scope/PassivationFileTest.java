@@ -0,0 +1,99 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link PassivationFile}.
+ *
+ * @since 2.1
+ */
+public final class PassivationFileTest {
+
+    private static byte[] bytes(int length, int value) {
+        final byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    /**
+     * Tests that freed segments are merged, reused and truncated.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void reuse() throws IOException {
+        final File path = File.createTempFile("palava-conversations", ".segments");
+        final PassivationFile file = new PassivationFile(path);
+        try {
+            final PassivationFile.Segment first = file.write(bytes(10, 1));
+            final PassivationFile.Segment second = file.write(bytes(10, 2));
+            final PassivationFile.Segment third = file.write(bytes(10, 3));
+            Assert.assertEquals(30L, file.size());
+
+            file.free(first);
+            file.free(second);
+            final PassivationFile.Segment merged = file.write(bytes(15, 4));
+            Assert.assertEquals(30L, file.size());
+            Assert.assertTrue(Arrays.equals(bytes(15, 4), file.read(merged)));
+            Assert.assertTrue(Arrays.equals(bytes(10, 3), file.read(third)));
+
+            // merged with the remainder of the reused segment
+            file.free(third);
+            Assert.assertEquals(15L, file.size());
+            file.free(merged);
+            Assert.assertEquals(0L, file.size());
+            Assert.assertEquals(0L, path.length());
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Tests that segments spanning multiple mapped regions are written and read
+     * completely and that regions at the end of the file are truncated once freed.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void regions() throws IOException {
+        final File path = File.createTempFile("palava-conversations", ".segments");
+        final PassivationFile file = new PassivationFile(path, 8);
+        try {
+            final PassivationFile.Segment first = file.write(bytes(5, 1));
+            final PassivationFile.Segment second = file.write(bytes(20, 2));
+            Assert.assertEquals(32L, path.length());
+            Assert.assertTrue(Arrays.equals(bytes(5, 1), file.read(first)));
+            Assert.assertTrue(Arrays.equals(bytes(20, 2), file.read(second)));
+
+            file.free(second);
+            Assert.assertEquals(8L, path.length());
+            final PassivationFile.Segment third = file.write(bytes(12, 3));
+            Assert.assertTrue(Arrays.equals(bytes(12, 3), file.read(third)));
+            Assert.assertTrue(Arrays.equals(bytes(5, 1), file.read(first)));
+        } finally {
+            file.close();
+        }
+    }
+
+}
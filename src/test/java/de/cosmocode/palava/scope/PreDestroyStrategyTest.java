@@ -0,0 +1,106 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.List;
+
+import javax.annotation.PreDestroy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests {@link PreDestroyStrategy}.
+ *
+ * @since 2.1
+ */
+public final class PreDestroyStrategyTest {
+
+    private final List<String> calls = Lists.newArrayList();
+
+    /**
+     * Base class with a private and an overridable destroy method.
+     */
+    private class Parent {
+
+        @PreDestroy
+        private void parent() {
+            calls.add("parent");
+        }
+
+        @PreDestroy
+        void shared() {
+            calls.add("parent.shared");
+        }
+
+    }
+
+    /**
+     * Sub class overriding one destroy method of its parent.
+     */
+    private final class Child extends Parent {
+
+        @PreDestroy
+        @Override
+        void shared() {
+            calls.add("child.shared");
+        }
+
+        @PreDestroy
+        void child() {
+            calls.add("child");
+        }
+
+    }
+
+    /**
+     * Sub class declaring a method with the name of a private method of its parent.
+     */
+    private final class Shadowing extends Parent {
+
+        @PreDestroy
+        private void parent() {
+            calls.add("shadowing.parent");
+        }
+
+    }
+
+    /**
+     * Tests that super classes are destroyed first and overridden methods are invoked once.
+     */
+    @Test
+    public void order() {
+        final PreDestroyStrategy strategy = new PreDestroyStrategy();
+        Assert.assertTrue(strategy.appliesTo(Child.class));
+        Assert.assertFalse(strategy.appliesTo(String.class));
+        strategy.destroy(new Child(), ThrowingDestroyErrors.INSTANCE);
+        Assert.assertEquals(ImmutableList.of("parent", "child.shared", "child"), calls);
+    }
+
+    /**
+     * Tests that methods with the name of a private method of a super class don't override it.
+     */
+    @Test
+    public void privateNotOverridden() {
+        new PreDestroyStrategy().destroy(new Shadowing(), ThrowingDestroyErrors.INSTANCE);
+        Assert.assertEquals(ImmutableList.of("parent", "parent.shared", "shadowing.parent"), calls);
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Tests {@link Reclaimable} bindings.
+ *
+ * @since 2.1
+ */
+public final class ReclaimableTest {
+
+    /**
+     * A weakly held, destroyable service.
+     */
+    @UnitOfWork
+    @Reclaimable(Reclaimable.Strength.WEAK)
+    static final class WeakService implements Destroyable {
+
+        private boolean destroyed;
+
+        @Override
+        public void destroy() {
+            this.destroyed = true;
+        }
+
+    }
+
+    private Injector unit() {
+        return Guice.createInjector(
+            new ThreadLocalUnitOfWorkScopeModule(),
+            new DestroyStrategyModule()
+        );
+    }
+
+    /**
+     * Tests that reachable instances are reused and destroyed at the end.
+     */
+    @Test
+    public void destroy() {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        final WeakService service = injector.getInstance(WeakService.class);
+        Assert.assertSame(service, injector.getInstance(WeakService.class));
+        unit.end();
+        Assert.assertTrue(service.destroyed);
+    }
+
+    /**
+     * Tests that reclaimed instances are re-created.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void reclaimed() throws InterruptedException {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        final WeakReference<WeakService> reference = new WeakReference<WeakService>(
+            injector.getInstance(WeakService.class));
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(reference.get());
+
+        final WeakService recreated = injector.getInstance(WeakService.class);
+        Assert.assertNotNull(recreated);
+        Assert.assertSame(recreated, injector.getInstance(WeakService.class));
+        unit.end();
+        Assert.assertTrue(recreated.destroyed);
+    }
+
+}
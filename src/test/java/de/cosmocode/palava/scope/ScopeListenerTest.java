@@ -0,0 +1,196 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Scope;
+import com.google.inject.multibindings.Multibinder;
+
+/**
+ * Tests {@link ScopeListener}s.
+ *
+ * @since 2.1
+ */
+public final class ScopeListenerTest {
+
+    /**
+     * A listener which counts all events.
+     */
+    private static final class CountingListener extends AbstractScopeListener {
+
+        private final AtomicInteger begins = new AtomicInteger();
+        private final AtomicInteger ends = new AtomicInteger();
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicInteger misses = new AtomicInteger();
+        private final AtomicInteger destroys = new AtomicInteger();
+        private volatile boolean enabled = true;
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void onBegin(Scope scope) {
+            begins.incrementAndGet();
+        }
+
+        @Override
+        public void onEnd(Scope scope) {
+            ends.incrementAndGet();
+        }
+
+        @Override
+        public void onProvision(Scope scope, Key<?> key, boolean hit, long nanos) {
+            Assert.assertTrue(nanos >= 0L);
+            if (hit) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onDestroy(Scope scope, Object object, long nanos, Exception failure) {
+            destroys.incrementAndGet();
+        }
+
+    }
+
+    private static Injector unit(final CountingListener listener) {
+        return Guice.createInjector(
+            new ThreadLocalUnitOfWorkScopeModule(),
+            new DestroyStrategyModule(),
+            new AbstractModule() {
+
+                @Override
+                protected void configure() {
+                    Multibinder.newSetBinder(binder(), ScopeListener.class).addBinding().toInstance(listener);
+                }
+
+            }
+        );
+    }
+
+    /**
+     * Tests that a bound listener observes the lifecycle of a unit of work.
+     */
+    @Test
+    public void events() {
+        final CountingListener listener = new CountingListener();
+        final Injector injector = unit(listener);
+
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        Assert.assertSame(service, injector.getInstance(DestroyableService.class));
+        unit.end();
+
+        Assert.assertTrue(service.isDestroyed());
+        Assert.assertEquals(1, listener.begins.get());
+        Assert.assertEquals(1, listener.ends.get());
+        Assert.assertEquals(1, listener.misses.get());
+        Assert.assertEquals(1, listener.hits.get());
+        Assert.assertEquals(1, listener.destroys.get());
+    }
+
+    /**
+     * Tests that a disabled listener is not notified.
+     */
+    @Test
+    public void disabled() {
+        final CountingListener listener = new CountingListener();
+        listener.enabled = false;
+        final Injector injector = unit(listener);
+
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        unit.end();
+
+        Assert.assertTrue(service.isDestroyed());
+        Assert.assertEquals(0, listener.begins.get());
+        Assert.assertEquals(0, listener.misses.get());
+        Assert.assertEquals(0, listener.destroys.get());
+    }
+
+    /**
+     * Tests that a failing listener does not break the unit of work.
+     */
+    @Test
+    public void failing() {
+        final Injector injector = Guice.createInjector(
+            new ThreadLocalUnitOfWorkScopeModule(),
+            new DestroyStrategyModule(),
+            new AbstractModule() {
+
+                @Override
+                protected void configure() {
+                    Multibinder.newSetBinder(binder(), ScopeListener.class).addBinding().toInstance(
+                        new AbstractScopeListener() {
+
+                            @Override
+                            public void onProvision(Scope scope, Key<?> key, boolean hit, long nanos) {
+                                throw new IllegalStateException();
+                            }
+
+                        });
+                }
+
+            }
+        );
+
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        unit.end();
+        Assert.assertTrue(service.isDestroyed());
+    }
+
+    /**
+     * Tests that compound listeners are enabled if any of their listeners is.
+     */
+    @Test
+    public void compound() {
+        final CountingListener first = new CountingListener();
+        final CountingListener second = new CountingListener();
+        first.enabled = false;
+        second.enabled = false;
+        
+        final ScopeListener switchable = CompoundScopeListener.of(ImmutableSet.<ScopeListener>of(first, second));
+        Assert.assertFalse(switchable.isEnabled());
+        second.enabled = true;
+        Assert.assertTrue(switchable.isEnabled());
+        
+        second.enabled = false;
+        final ScopeListener always = CompoundScopeListener.of(ImmutableSet.<ScopeListener>of(
+            first, new AbstractScopeListener() { }
+        ));
+        Assert.assertTrue(always.isEnabled());
+        Assert.assertNull(CompoundScopeListener.of(ImmutableSet.<ScopeListener>of()));
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+
+/**
+ * Tests {@link ScopeStatistics} and {@link LatencyHistogram}.
+ *
+ * @since 2.1
+ */
+public final class ScopeStatisticsTest {
+
+    /**
+     * Tests that provisions, units of work and destructions are recorded.
+     */
+    @Test
+    public void statistics() {
+        final Injector injector = Guice.createInjector(
+            new ThreadLocalUnitOfWorkScopeModule(),
+            new DestroyStrategyModule(),
+            new ScopeStatisticsModule()
+        );
+
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        injector.getInstance(DestroyableService.class);
+        injector.getInstance(DestroyableService.class);
+        unit.end();
+
+        final ScopeStatistics statistics = injector.getInstance(ScopeStatistics.class);
+        final ProvisionStatistics provisions = statistics.getProvisions().get(Key.get(DestroyableService.class));
+        Assert.assertEquals(1L, provisions.getHits());
+        Assert.assertEquals(1L, provisions.getMisses());
+        Assert.assertEquals(1L, provisions.getCreation().getCount());
+        Assert.assertTrue(statistics.getUnused().isEmpty());
+
+        final UnitStatistics units = statistics.getUnits().get(unit);
+        Assert.assertEquals(1L, units.getDuration().getCount());
+        Assert.assertTrue(units.getDestruction().getCount() > 0L);
+    }
+
+    /**
+     * Tests the bucket boundaries of the {@link LatencyHistogram}.
+     */
+    @Test
+    public void histogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1000L, snapshot.getCount());
+        Assert.assertEquals(1000000L, snapshot.getMax());
+        Assert.assertEquals(500500000L, snapshot.getTotal());
+
+        final long median = snapshot.getPercentile(50.0);
+        Assert.assertTrue(median >= 500000L && median <= 500000L * 9 / 8);
+        Assert.assertEquals(1000000L, snapshot.getPercentile(100.0));
+
+        for (long value = 0; value < 1L << 20; value = value * 3 / 2 + 1) {
+            final int index = LatencyHistogram.indexOf(value);
+            Assert.assertTrue(LatencyHistogram.lowerBoundOf(index) <= value);
+            Assert.assertTrue(LatencyHistogram.upperBoundOf(index) >= value);
+        }
+        Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Names;
+
+/**
+ * Tests {@link ScopingProvider}.
+ *
+ * @since 2.1
+ */
+public final class ScopingProviderTest {
+
+    private static final int THREADS = 8;
+
+    /**
+     * A scope which shares one context between all threads.
+     */
+    private static final class SharedScope extends AbstractScope {
+
+        private final ScopeContext context = new DefaultScopeContext();
+
+        @Override
+        public ScopeContext get() {
+            return context;
+        }
+
+    }
+
+    /**
+     * Tests that concurrent callers share one instance in single flight mode.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void singleFlight() throws Exception {
+        final ScopingOptions options = new ScopingOptions();
+        options.setSingleFlight(true);
+
+        final AtomicInteger created = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final Provider<Object> provider = new ScopingProvider<Object>(new SharedScope(),
+            Key.get(Object.class), new Provider<Object>() {
+
+                @Override
+                public Object get() {
+                    created.incrementAndGet();
+                    try {
+                        started.await(1, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return new Object();
+                }
+
+            }, options);
+
+        final ExecutorService service = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Object>> futures = Lists.newArrayList();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(service.submit(new Callable<Object>() {
+
+                    @Override
+                    public Object call() {
+                        return provider.get();
+                    }
+
+                }));
+            }
+            started.countDown();
+
+            final Object expected = futures.get(0).get();
+            for (Future<Object> future : futures) {
+                Assert.assertSame(expected, future.get());
+            }
+            Assert.assertEquals(1, created.get());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a failing destruction of a discarded duplicate does not fail the caller.
+     */
+    @Test
+    public void duplicate() {
+        final SharedScope scope = new SharedScope();
+        scope.setStrategy(new DestroyStrategy() {
+
+            @Override
+            public void destroy(Object object, DestroyErrors errors) {
+                errors.destroyError(object, new IllegalStateException());
+            }
+
+        });
+        final Key<Object> key = Key.get(Object.class);
+        final Object existing = new Object();
+        final Provider<Object> provider = new ScopingProvider<Object>(scope, key, new Provider<Object>() {
+
+            @Override
+            public Object get() {
+                // simulates a concurrent creation
+                scope.context.put(key, existing);
+                return new Object();
+            }
+
+        }, new ScopingOptions());
+
+        Assert.assertSame(existing, provider.get());
+        Assert.assertSame(existing, provider.get());
+    }
+
+    /**
+     * Tests that the encoder is applied once and its result is used as context key.
+     */
+    @Test
+    public void encoder() {
+        final AtomicInteger encoded = new AtomicInteger();
+        final SharedScope scope = new SharedScope();
+        final Key<Object> key = Key.get(Object.class, Names.named("encoded"));
+        final ScopingProvider<Object> provider = new ScopingProvider<Object>(scope, key, new Provider<Object>() {
+
+            @Override
+            public Object get() {
+                return new Object();
+            }
+
+        }, new ScopingOptions());
+
+        provider.setEncoder(new KeyEncoder() {
+
+            @Override
+            public Object apply(Key<?> input) {
+                encoded.incrementAndGet();
+                return KeyEncoders.compact().apply(input);
+            }
+
+        });
+
+        final Object scoped = provider.get();
+        Assert.assertSame(scoped, provider.get());
+        Assert.assertEquals(1, encoded.get());
+        Assert.assertSame(scoped, scope.get().get(KeyEncoders.compact().apply(key)));
+        Assert.assertFalse(scope.get().containsKey(key));
+    }
+
+    /**
+     * Tests that keys are encoded once and the encoder can't be changed afterwards.
+     */
+    @Test
+    public void encodedOnce() {
+        final SharedScope scope = new SharedScope();
+        final ScopingOptions options = new ScopingOptions();
+        final Key<Object> key = Key.get(Object.class, Names.named("once"));
+        final ScopingProvider<Object> provider = new ScopingProvider<Object>(scope, key, new Provider<Object>() {
+
+            @Override
+            public Object get() {
+                return new Object();
+            }
+
+        }, options);
+
+        options.setEncoder(KeyEncoders.compact());
+        final Object scoped = provider.get();
+        
+        try {
+            options.setEncoder(KeyEncoders.ordinals());
+            Assert.fail("Encoder changed after encoding");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        
+        try {
+            provider.setEncoder(KeyEncoders.ordinals());
+            Assert.fail("Encoder changed after encoding");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        
+        Assert.assertSame(scoped, provider.get());
+        Assert.assertEquals(1, options.getSlots().size());
+        Assert.assertSame(scoped, scope.get().get(KeyEncoders.compact().apply(key)));
+    }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import de.cosmocode.palava.core.aop.ReinjectableAspectModule;
+
+/**
+ * Tests {@link SharedUnitOfWorkScope}.
+ *
+ * @since 2.1
+ */
+public final class SharedUnitOfWorkScopeTest extends AbstractUnitOfWorkScopeTest {
+
+    private static final int THREADS = 8;
+
+    @Override
+    public Injector unit() {
+        return Guice.createInjector(
+            new SharedUnitOfWorkScopeModule(),
+            new ReinjectableAspectModule(),
+            new DestroyStrategyModule()
+        );
+    }
+
+    /**
+     * Tests that concurrent participants share their instances, which
+     * are destroyed when the last participant leaves.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void participants() throws Exception {
+        final Injector injector = unit();
+        final SharedUnitOfWorkScope scope = injector.getInstance(SharedUnitOfWorkScope.class);
+        final CountDownLatch joined = new CountDownLatch(THREADS);
+        final CountDownLatch leave = new CountDownLatch(1);
+
+        final ExecutorService service = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<DestroyableService>> futures = Lists.newArrayList();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(service.submit(new Callable<DestroyableService>() {
+
+                    @Override
+                    public DestroyableService call() throws InterruptedException {
+                        scope.join();
+                        try {
+                            joined.countDown();
+                            leave.await();
+                            return injector.getInstance(DestroyableService.class);
+                        } finally {
+                            scope.leave();
+                        }
+                    }
+
+                }));
+            }
+
+            joined.await();
+            Assert.assertEquals(THREADS, scope.getParticipants());
+            leave.countDown();
+
+            final DestroyableService expected = futures.get(0).get();
+            for (Future<DestroyableService> future : futures) {
+                Assert.assertSame(expected, future.get());
+            }
+            Assert.assertTrue(expected.isDestroyed());
+            Assert.assertFalse(scope.isActive());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Tests that only the participant starting the unit of work owns it
+     * and that closing a handle twice leaves only once.
+     */
+    @Test
+    public void owner() {
+        final SharedUnitOfWorkScope scope = unit().getInstance(SharedUnitOfWorkScope.class);
+        final UnitOfWorkHandle first = scope.open();
+        final UnitOfWorkHandle second = scope.open();
+        final UnitOfWorkHandle third = scope.open();
+        Assert.assertTrue(first.isOwner());
+        Assert.assertFalse(second.isOwner());
+        Assert.assertEquals(3, scope.getParticipants());
+
+        second.close();
+        second.close();
+        Assert.assertEquals(2, scope.getParticipants());
+
+        first.close();
+        third.close();
+        Assert.assertFalse(scope.isActive());
+    }
+
+}
@@ -16,6 +16,9 @@
 
 package de.cosmocode.palava.scope;
 
+import org.junit.Assert;
+import org.junit.Test;
+
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 
@@ -38,4 +41,23 @@ public final class SingletonUnitOfWorkScopeTest extends AbstractUnitOfWorkScopeT
         );
     }
 
+    /**
+     * Tests that every unit of work creates its own instances.
+     */
+    @Test
+    public void renewed() {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        unit.begin();
+        final DestroyableService first = injector.getInstance(DestroyableService.class);
+        unit.end();
+        unit.begin();
+        final DestroyableService second = injector.getInstance(DestroyableService.class);
+        Assert.assertNotSame(first, second);
+        Assert.assertTrue(first.isDestroyed());
+        Assert.assertFalse(second.isDestroyed());
+        unit.end();
+        Assert.assertTrue(second.isDestroyed());
+    }
+
 }
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Scope;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Names;
+
+/**
+ * Tests {@link TenantScope}.
+ *
+ * @since 2.1
+ */
+public final class TenantScopeTest {
+
+    /**
+     * A resolver which returns a settable tenant.
+     */
+    private static final class FixedTenantResolver implements TenantResolver {
+
+        private Object tenant;
+
+        @Override
+        public Object resolveTenant() {
+            return tenant;
+        }
+
+    }
+
+    private final FixedTenantResolver resolver = new FixedTenantResolver();
+
+    private Injector unit(Module... modules) {
+        return Guice.createInjector(
+            new TenantScopeModule(),
+            new DestroyStrategyModule(),
+            new AbstractModule() {
+
+                @Override
+                protected void configure() {
+                    bind(TenantResolver.class).toInstance(resolver);
+                    bind(DestroyableService.class).in(TenantScoped.class);
+                    bind(Object.class).in(TenantScoped.class);
+                    bindConstant().annotatedWith(Names.named(ScopeConfig.TENANT_MAXIMUM_SIZE)).to(5);
+                    for (Module module : modules) {
+                        install(module);
+                    }
+                }
+
+            }
+        );
+    }
+
+    private DestroyableService as(Injector injector, Object tenant) {
+        resolver.tenant = tenant;
+        return injector.getInstance(DestroyableService.class);
+    }
+
+    /**
+     * Tests that every tenant gets its own instances.
+     */
+    @Test
+    public void tenants() {
+        final Injector injector = unit();
+        final DestroyableService first = as(injector, "first");
+        final DestroyableService second = as(injector, "second");
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(first, as(injector, "first"));
+        Assert.assertSame(second, as(injector, "second"));
+
+        injector.getInstance(TenantScope.class).invalidate("first");
+        Assert.assertTrue(first.isDestroyed());
+        Assert.assertFalse(second.isDestroyed());
+    }
+
+    /**
+     * Tests that tenants seen once are evicted and destroyed before hot tenants.
+     */
+    @Test
+    public void eviction() {
+        final Injector injector = unit();
+        final DestroyableService hot = as(injector, "hot");
+        as(injector, "hot");
+
+        final List<DestroyableService> cold = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            cold.add(as(injector, i));
+        }
+        // the hot tenant occupies one of five entries
+        for (int i = 0; i < cold.size(); i++) {
+            Assert.assertEquals(i < cold.size() - 4, cold.get(i).isDestroyed());
+        }
+
+        Assert.assertFalse(hot.isDestroyed());
+        Assert.assertSame(hot, as(injector, "hot"));
+    }
+
+    /**
+     * Tests that a request accessing several bindings of a tenant inside of
+     * a unit of work counts as a single access of that tenant.
+     */
+    @Test
+    public void request() {
+        final Injector injector = unit(new ThreadLocalUnitOfWorkScopeModule());
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        
+        unit.begin();
+        final DestroyableService once = as(injector, "once");
+        injector.getInstance(Object.class);
+        Assert.assertSame(once, as(injector, "once"));
+        unit.end();
+        
+        for (int i = 0; i < 5; i++) {
+            unit.begin();
+            as(injector, i);
+            unit.end();
+        }
+        Assert.assertTrue(once.isDestroyed());
+    }
+
+    /**
+     * Tests that provisions are reported to bound listeners.
+     */
+    @Test
+    public void listener() {
+        final AtomicInteger misses = new AtomicInteger();
+        final AtomicInteger hits = new AtomicInteger();
+        final Injector injector = unit(new AbstractModule() {
+
+            @Override
+            protected void configure() {
+                Multibinder.newSetBinder(binder(), ScopeListener.class).addBinding().toInstance(
+                    new AbstractScopeListener() {
+
+                        @Override
+                        public void onProvision(Scope scope, Key<?> key, boolean hit, long nanos) {
+                            (hit ? hits : misses).incrementAndGet();
+                        }
+
+                    });
+            }
+
+        });
+        as(injector, "first");
+        as(injector, "first");
+        Assert.assertEquals(1, misses.get());
+        Assert.assertEquals(1, hits.get());
+    }
+
+    /**
+     * Tests that a unit of work doesn't keep using the context of an invalidated tenant.
+     */
+    @Test
+    public void invalidateRemembered() {
+        final Injector injector = unit(new ThreadLocalUnitOfWorkScopeModule());
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        
+        unit.begin();
+        final DestroyableService before = as(injector, "tenant");
+        injector.getInstance(TenantScope.class).invalidate("tenant");
+        Assert.assertTrue(before.isDestroyed());
+        
+        final DestroyableService after = as(injector, "tenant");
+        Assert.assertNotSame(before, after);
+        Assert.assertSame(after, as(injector, "tenant"));
+        unit.end();
+        
+        injector.getInstance(TenantScope.class).invalidate("tenant");
+        Assert.assertTrue(after.isDestroyed());
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Tests {@link ThreadConfinedScopeContext}.
+ *
+ * @since 2.1
+ */
+public final class ThreadConfinedScopeContextTest {
+
+    /**
+     * Tests random operations on a context small enough to keep its entries packed.
+     */
+    @Test
+    public void inline() {
+        random(ThreadConfinedScopeContext.INLINE_THRESHOLD);
+    }
+
+    /**
+     * Tests random operations on a context which switches to a hash table, using
+     * colliding keys to cover probing, resizing and deletion.
+     */
+    @Test
+    public void hashed() {
+        random(64);
+    }
+
+    /**
+     * Tests random operations against a {@link java.util.HashMap}.
+     *
+     * @param keys the number of distinct keys
+     */
+    private void random(int keys) {
+        final ScopeContextSizes sizes = new ScopeContextSizes(1);
+        final ScopeContext context = new ThreadConfinedScopeContext(sizes.expected(), sizes);
+        final Map<Object, Object> expected = Maps.newHashMap();
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            final Integer key = Integer.valueOf(random.nextInt(keys) * 1024);
+            final Integer value = Integer.valueOf(i);
+            switch (random.nextInt(4)) {
+                case 0:
+                    Assert.assertEquals(expected.put(key, value), context.put(key, value));
+                    break;
+                case 1:
+                    if (!expected.containsKey(key)) {
+                        expected.put(key, value);
+                    }
+                    context.putIfAbsent(key, value);
+                    break;
+                case 2:
+                    Assert.assertEquals(expected.remove(key), context.remove(key));
+                    break;
+                default:
+                    Assert.assertEquals(expected.get(key), context.get(key));
+                    break;
+            }
+            Assert.assertEquals(expected.size(), context.size());
+        }
+
+        Assert.assertEquals(expected, context);
+        context.clear();
+        Assert.assertTrue(context.isEmpty());
+        Assert.assertEquals(expected.size(), sizes.expected());
+    }
+
+}
@@ -16,6 +16,9 @@
 
 package de.cosmocode.palava.scope;
 
+import org.junit.Assert;
+import org.junit.Test;
+
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 
@@ -37,4 +40,34 @@ public final class ThreadLocalUnitOfWorkScopeTest extends AbstractUnitOfWorkScop
         );
     }
 
+    /**
+     * Tests that nested units of work read through to their parent
+     * and destroy only their own instances.
+     */
+    @Test
+    public void nested() {
+        final Injector injector = unit();
+        final NestableUnitOfWorkScope unit = injector.getInstance(NestableUnitOfWorkScope.class);
+        unit.begin();
+        
+        unit.beginNested();
+        Assert.assertTrue(unit.isNested());
+        final DestroyableService child = injector.getInstance(DestroyableService.class);
+        unit.endNested();
+        Assert.assertTrue(child.isDestroyed());
+        Assert.assertFalse(unit.isNested());
+        
+        final DestroyableService parent = injector.getInstance(DestroyableService.class);
+        Assert.assertNotSame(child, parent);
+        unit.beginNested();
+        Assert.assertSame(parent, injector.getInstance(DestroyableService.class));
+        unit.endNested();
+        Assert.assertFalse(parent.isDestroyed());
+        
+        unit.beginNested();
+        unit.end();
+        Assert.assertTrue(parent.isDestroyed());
+        Assert.assertFalse(unit.isActive());
+    }
+
 }
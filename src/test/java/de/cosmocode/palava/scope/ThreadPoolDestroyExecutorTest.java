@@ -0,0 +1,285 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.name.Names;
+
+import de.cosmocode.junit.UnitProvider;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * Tests {@link ThreadPoolDestroyExecutor}, {@link DestroyBackpressure} and {@link AsyncDestroyModule}.
+ *
+ * @since 2.1
+ */
+public final class ThreadPoolDestroyExecutorTest implements UnitProvider<ThreadPoolDestroyExecutor> {
+
+    @Override
+    public ThreadPoolDestroyExecutor unit() {
+        final ThreadPoolDestroyExecutor unit = new ThreadPoolDestroyExecutor();
+        unit.setThreads(1);
+        unit.setQueueSize(1);
+        return unit;
+    }
+    
+    /**
+     * A destruction which blocks the executing thread until it gets released.
+     */
+    private static final class Blocker implements Runnable {
+        
+        private final CountDownLatch started = new CountDownLatch(1);
+        
+        private final CountDownLatch release = new CountDownLatch(1);
+        
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+    }
+    
+    /**
+     * A destruction which counts down a latch.
+     */
+    private static final class Counter implements Runnable {
+        
+        private final CountDownLatch latch;
+        
+        public Counter(CountDownLatch latch) {
+            this.latch = latch;
+        }
+        
+        @Override
+        public void run() {
+            latch.countDown();
+        }
+        
+    }
+    
+    /**
+     * Occupies the only thread of the unit and fills its queue.
+     * 
+     * @param unit the unit
+     * @param queued the destruction to queue
+     * @return the blocker which occupies the thread
+     * @throws InterruptedException should not happen
+     */
+    private static Blocker saturate(ThreadPoolDestroyExecutor unit, Runnable queued) throws InterruptedException {
+        final Blocker blocker = new Blocker();
+        unit.execute(blocker);
+        Assert.assertTrue(blocker.started.await(5, TimeUnit.SECONDS));
+        unit.execute(queued);
+        return blocker;
+    }
+
+    /**
+     * Tests that {@link DestroyBackpressure#BLOCK} blocks the ending thread while the queue is full.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void block() throws Exception {
+        final ThreadPoolDestroyExecutor unit = unit();
+        unit.setBackpressure(DestroyBackpressure.BLOCK);
+        final CountDownLatch destroyed = new CountDownLatch(2);
+        final Blocker blocker = saturate(unit, new Counter(destroyed));
+        
+        final Thread ending = new Thread(new Runnable() {
+            
+            @Override
+            public void run() {
+                unit.execute(new Counter(destroyed));
+            }
+            
+        });
+        ending.start();
+        ending.join(100);
+        Assert.assertTrue("Ending thread should block on a full queue", ending.isAlive());
+        Assert.assertEquals(2, destroyed.getCount());
+        
+        blocker.release.countDown();
+        ending.join(5000);
+        Assert.assertFalse(ending.isAlive());
+        Assert.assertTrue(destroyed.await(5, TimeUnit.SECONDS));
+        unit.dispose();
+    }
+
+    /**
+     * Tests that {@link DestroyBackpressure#CALLER_RUNS} destroys on the ending thread while the queue is full.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void callerRuns() throws Exception {
+        final ThreadPoolDestroyExecutor unit = unit();
+        unit.setBackpressure(DestroyBackpressure.CALLER_RUNS);
+        final List<Thread> threads = Lists.newArrayList();
+        final Runnable recording = new Runnable() {
+            
+            @Override
+            public void run() {
+                synchronized (threads) {
+                    threads.add(Thread.currentThread());
+                }
+            }
+            
+        };
+        final Blocker blocker = saturate(unit, recording);
+        
+        unit.execute(recording);
+        synchronized (threads) {
+            Assert.assertEquals(1, threads.size());
+            Assert.assertSame(Thread.currentThread(), threads.get(0));
+        }
+        
+        blocker.release.countDown();
+        unit.dispose();
+        synchronized (threads) {
+            Assert.assertEquals(2, threads.size());
+            Assert.assertNotSame(Thread.currentThread(), threads.get(1));
+        }
+    }
+
+    /**
+     * Tests that failing destructions are passed to the configured handler
+     * and do not affect subsequent destructions.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void handler() throws Exception {
+        final ThreadPoolDestroyExecutor unit = unit();
+        final List<RuntimeException> handled = Lists.newArrayList();
+        unit.setHandler(new DestroyErrorHandler() {
+            
+            @Override
+            public void handle(RuntimeException exception) {
+                synchronized (handled) {
+                    handled.add(exception);
+                }
+            }
+            
+        });
+        final IllegalStateException failure = new IllegalStateException();
+        unit.execute(new Runnable() {
+            
+            @Override
+            public void run() {
+                throw failure;
+            }
+            
+        });
+        final CountDownLatch destroyed = new CountDownLatch(1);
+        unit.execute(new Counter(destroyed));
+        Assert.assertTrue(destroyed.await(5, TimeUnit.SECONDS));
+        unit.dispose();
+        
+        synchronized (handled) {
+            Assert.assertEquals(1, handled.size());
+            Assert.assertSame(failure, handled.get(0));
+        }
+    }
+
+    /**
+     * Tests that {@link ThreadPoolDestroyExecutor#dispose()} drains all pending destructions
+     * and that destructions after disposal happen on the ending thread.
+     *
+     * @throws LifecycleException should not happen
+     */
+    @Test
+    public void drain() throws LifecycleException {
+        final ThreadPoolDestroyExecutor unit = unit();
+        unit.setQueueSize(16);
+        final AtomicInteger destroyed = new AtomicInteger();
+        final Runnable slow = new Runnable() {
+            
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                destroyed.incrementAndGet();
+            }
+            
+        };
+        for (int i = 0; i < 16; i++) {
+            unit.execute(slow);
+        }
+        unit.dispose();
+        Assert.assertEquals(16, destroyed.get());
+        
+        unit.execute(slow);
+        Assert.assertEquals(17, destroyed.get());
+    }
+
+    /**
+     * Tests that {@link AsyncDestroyModule} binds one configurable executor.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void module() throws Exception {
+        final Injector injector = Guice.createInjector(new AsyncDestroyModule(), new AbstractModule() {
+            
+            @Override
+            protected void configure() {
+                bindConstant().annotatedWith(Names.named(ScopeConfig.DESTROY_QUEUE_SIZE)).to(1);
+                bindConstant().annotatedWith(Names.named(ScopeConfig.DESTROY_BACKPRESSURE)).to("CALLER_RUNS");
+            }
+            
+        });
+        final DestroyExecutor executor = injector.getInstance(DestroyExecutor.class);
+        Assert.assertSame(executor, injector.getInstance(DestroyExecutor.class));
+        Assert.assertSame(ThreadPoolDestroyExecutor.class, executor.getClass());
+        
+        final ThreadPoolDestroyExecutor unit = ThreadPoolDestroyExecutor.class.cast(executor);
+        final List<Thread> threads = Lists.newArrayList();
+        final Blocker blocker = saturate(unit, new Counter(new CountDownLatch(1)));
+        unit.execute(new Runnable() {
+            
+            @Override
+            public void run() {
+                threads.add(Thread.currentThread());
+            }
+            
+        });
+        Assert.assertEquals(1, threads.size());
+        Assert.assertSame(Thread.currentThread(), threads.get(0));
+        blocker.release.countDown();
+        unit.dispose();
+    }
+    
+}
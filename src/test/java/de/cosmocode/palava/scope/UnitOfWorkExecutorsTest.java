@@ -0,0 +1,282 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.scope;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.OutOfScopeException;
+
+import de.cosmocode.junit.UnitProvider;
+import de.cosmocode.palava.core.aop.ReinjectableAspectModule;
+
+/**
+ * Tests {@link UnitOfWorkExecutors}.
+ *
+ * @since 2.1
+ */
+public final class UnitOfWorkExecutorsTest implements UnitProvider<Injector> {
+
+    @Override
+    public Injector unit() {
+        return Guice.createInjector(
+            new ThreadLocalUnitOfWorkScopeModule(),
+            new ReinjectableAspectModule(),
+            new DestroyStrategyModule()
+        );
+    }
+
+    /**
+     * Tests {@link UnitOfWorkExecutors#propagating(ExecutorService, UnitOfWorkScope)}.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void propagating() throws Exception {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        final ExecutorService executor = UnitOfWorkExecutors.propagating(Executors.newSingleThreadExecutor(), unit);
+        
+        try {
+            unit.begin();
+            final DestroyableService service = injector.getInstance(DestroyableService.class);
+            final DestroyableService propagated = executor.submit(new Callable<DestroyableService>() {
+                
+                @Override
+                public DestroyableService call() {
+                    return injector.getInstance(DestroyableService.class);
+                }
+                
+            }).get();
+            Assert.assertSame(service, propagated);
+            Assert.assertFalse(service.isDestroyed());
+            
+            final boolean active = executor.submit(new Callable<Boolean>() {
+                
+                @Override
+                public Boolean call() {
+                    return unit.isActive();
+                }
+                
+            }).get();
+            Assert.assertTrue(active);
+            unit.end();
+            Assert.assertTrue(service.isDestroyed());
+            
+            final boolean inactive = executor.submit(new Callable<Boolean>() {
+                
+                @Override
+                public Boolean call() {
+                    return unit.isActive();
+                }
+                
+            }).get();
+            Assert.assertFalse(inactive);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests closing a handle after its unit of work has been shared with a
+     * {@link PropagatingExecutorService} using thread confined contexts.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void closeShared() throws Exception {
+        final Injector injector = Guice.createInjector(
+            new ThreadLocalUnitOfWorkScopeModule(),
+            new ThreadConfinedScopeContextModule(),
+            new ReinjectableAspectModule(),
+            new DestroyStrategyModule()
+        );
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        final ExecutorService executor = UnitOfWorkExecutors.propagating(Executors.newSingleThreadExecutor(), unit);
+        
+        try {
+            final UnitOfWorkHandle handle = UnitOfWorkScopes.open(unit);
+            final DestroyableService service = injector.getInstance(DestroyableService.class);
+            final DestroyableService propagated = executor.submit(new Callable<DestroyableService>() {
+                
+                @Override
+                public DestroyableService call() {
+                    return injector.getInstance(DestroyableService.class);
+                }
+                
+            }).get();
+            Assert.assertSame(service, propagated);
+            handle.close();
+            Assert.assertFalse(unit.isActive());
+            Assert.assertTrue(service.isDestroyed());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that closing a stale handle fails without touching the current unit of work.
+     */
+    @Test
+    public void closeStale() {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        final UnitOfWorkHandle stale = UnitOfWorkScopes.open(unit);
+        stale.close();
+        
+        final UnitOfWorkHandle handle = UnitOfWorkScopes.open(unit);
+        final DestroyableService service = injector.getInstance(DestroyableService.class);
+        try {
+            stale.close();
+            Assert.fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(unit.isActive());
+            Assert.assertFalse(service.isDestroyed());
+        } finally {
+            handle.close();
+        }
+    }
+
+    /**
+     * Tests that ending the originating unit of work waits for running tasks
+     * and that tasks starting afterwards can't access the ended unit of work.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void ownership() throws Exception {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        final ExecutorService executor = UnitOfWorkExecutors.propagating(Executors.newSingleThreadExecutor(), unit);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<DestroyableService> services = Lists.newArrayList();
+        final List<Future<?>> futures = Lists.newArrayList();
+        
+        final Thread originator = new Thread(new Runnable() {
+            
+            @Override
+            public void run() {
+                unit.begin();
+                services.add(injector.getInstance(DestroyableService.class));
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    
+                    @Override
+                    public Boolean call() throws InterruptedException {
+                        started.countDown();
+                        release.await();
+                        return injector.getInstance(DestroyableService.class).isDestroyed();
+                    }
+                    
+                }));
+                futures.add(executor.submit(new Callable<DestroyableService>() {
+                    
+                    @Override
+                    public DestroyableService call() {
+                        return injector.getInstance(DestroyableService.class);
+                    }
+                    
+                }));
+                // tasks which did not start yet are not waited for
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                unit.end();
+            }
+            
+        });
+        
+        try {
+            originator.start();
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            originator.join(100);
+            Assert.assertTrue("Ending should wait for the running task", originator.isAlive());
+            Assert.assertFalse(services.get(0).isDestroyed());
+            
+            release.countDown();
+            originator.join(5000);
+            Assert.assertFalse(originator.isAlive());
+            Assert.assertEquals(Boolean.FALSE, futures.get(0).get());
+            Assert.assertTrue(services.get(0).isDestroyed());
+            
+            try {
+                futures.get(1).get();
+                Assert.fail("Expected OutOfScopeException");
+            } catch (ExecutionException e) {
+                // guice may wrap the exception of the scope
+                Throwable cause = e.getCause();
+                while (cause != null && !(cause instanceof OutOfScopeException)) {
+                    cause = cause.getCause();
+                }
+                Assert.assertNotNull(cause);
+            }
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that tasks can't end a propagated unit of work.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void endPropagated() throws Exception {
+        final Injector injector = unit();
+        final UnitOfWorkScope unit = injector.getInstance(UnitOfWorkScope.class);
+        final ExecutorService executor = UnitOfWorkExecutors.propagating(Executors.newSingleThreadExecutor(), unit);
+        
+        try {
+            unit.begin();
+            final DestroyableService service = injector.getInstance(DestroyableService.class);
+            try {
+                executor.submit(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        unit.end();
+                    }
+                    
+                }).get();
+                Assert.fail("Expected IllegalStateException");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            Assert.assertFalse(service.isDestroyed());
+            unit.end();
+            Assert.assertTrue(service.isDestroyed());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}